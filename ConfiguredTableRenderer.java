@@ -2,23 +2,206 @@
 public class ConfiguredTableRenderer {
     private final TableRenderer renderer;
     private final TableRenderConfig config;
-    private final ApplicationContext context;  // For dynamic bean invocation
+    private final RenderPlanRegistry renderPlans;
+    private final TableResultCache resultCache;
+    private final TablePipelineExecutor pipelineExecutor;
+    private final RowSorter rowSorter;
+    private final AsyncTableExecutor asyncExecutor;
+    private final TableMetrics metrics;
+    private final RequestCoalescer coalescer;
 
+    /**
+     * Renders the whole table. With TableSpec.coalesce, concurrent calls for the
+     * same table share one render and receive the same String.
+     */
     public String renderTable(String tableKey) throws Exception {
         TableSpec spec = config.getSpecs().get(tableKey);
-        List<Map<String, Object>> source = fetchData(spec.getDataSource(), context);
-        Predicate<Map<String, Object>> predicate = buildCriteria(spec.getCriteria());
-        return renderer.renderTable(source, spec.getColumns(), predicate);
-    }
-    
-    private List<Map<String, Object>> fetchData(String dataSourceExpr, ApplicationContext ctx) {
-        // Parse "service.method()" -> ctx.getBean(service).method()
-        // Implementation using ScriptEngine or reflection
-        return (List<Map<String, Object>>) evaluateExpression(dataSourceExpr, ctx);
-    }
-    
-    private Predicate<Map<String, Object>> buildCriteria(Map<String, Object> criteria) {
-        return row -> criteria.entrySet().stream()
-            .allMatch(entry -> Objects.equals(row.get(entry.getKey()), entry.getValue()));
+        if (spec.isCoalesce()) {
+            return coalescer.execute(List.of(TableResultCache.HTML, tableKey), () -> renderCached(tableKey, spec));
+        }
+        return renderCached(tableKey, spec);
+    }
+
+    private String renderCached(String tableKey, TableSpec spec) throws Exception {
+        if (spec.getCache() != null && spec.getCache().caches(TableResultCache.HTML)) {
+            return resultCache.specs().get(tableKey, spec.getCache(), TableResultCache.HTML, null,
+                () -> renderUncached(tableKey));
+        }
+        return renderUncached(tableKey);
+    }
+
+    /**
+     * Renders one page of a table. Only the rows of the page are projected and
+     * rendered; unset query values fall back to TableSpec.query.
+     */
+    public String renderTable(String tableKey, TableQuery query) throws Exception {
+        RenderPlan plan = renderPlans.plan(tableKey);
+        TableQuery effective = (query != null ? query : new TableQuery()).withDefaults(plan.getSpec().getQuery());
+        if (plan.getSpec().isCoalesce()) {
+            return coalescer.execute(List.of("page", tableKey, effective), () -> renderPage(tableKey, plan, effective));
+        }
+        return renderPage(tableKey, plan, effective);
+    }
+
+    private String renderPage(String tableKey, RenderPlan plan, TableQuery query) throws Exception {
+        Iterator<Map<String, Object>> filtered = fetch(tableKey, plan).stream().filter(plan.getCriteria()).iterator();
+        StringWriter writer = new StringWriter();
+        if (query.isSorted() && !query.isPaged()) {
+            // full sort: render rows as they come out of the merge
+            TableMetrics.RowCounter rendered = new TableMetrics.RowCounter();
+            try (RowSorter.CloseableRowIterator sorted = rowSorter.sort(filtered, query.comparator());
+                 TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.RENDER)) {
+                renderer.renderRows(rendered.counted(renderer.project(sorted, plan.getColumns(), row -> true)),
+                    plan.getColumns(), plan.getFormatters(), plan.getTemplate(), writer);
+            }
+            metrics.specs().rowsOut(tableKey, rendered.getCount());
+            return writer.toString();
+        }
+
+        RowWindow window = rowSorter.select(filtered, query);
+        List<Map<String, Object>> rows;
+        try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.PROJECT)) {
+            rows = window.getRows().stream()
+                .map(row -> TableRenderer.project(row, plan.getColumns()))
+                .collect(Collectors.toList());
+        }
+        try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.RENDER)) {
+            renderer.renderRows(rows.iterator(), plan.getColumns(), plan.getFormatters(), plan.getTemplate(), writer);
+        }
+        metrics.specs().rowsOut(tableKey, rows.size());
+        return writer.toString();
+    }
+
+    /**
+     * Number of rows matching the spec's criteria, without projecting or rendering them
+     */
+    public long countRows(String tableKey) {
+        RenderPlan plan = renderPlans.plan(tableKey);
+        return plan.fetchRows().stream().filter(plan.getCriteria()).count();
+    }
+
+    /**
+     * Renders off the calling thread (a virtual thread where available) with the
+     * default timeout; cancelling the future interrupts the data source call.
+     */
+    public CompletableFuture<String> renderTableAsync(String tableKey) {
+        return asyncExecutor.submit(() -> renderTable(tableKey));
+    }
+
+    public CompletableFuture<String> renderTableAsync(String tableKey, Duration timeout) {
+        return asyncExecutor.submit(() -> renderTable(tableKey), timeout);
+    }
+
+    public CompletableFuture<Map<String, String>> renderTablesAsync(Set<String> tableKeys, Duration timeout) {
+        return asyncExecutor.submitAll(tableKeys, key -> () -> renderTable(key), timeout);
+    }
+
+    /**
+     * Renders several tables for one page concurrently, so the page costs about
+     * the slowest fetch instead of the sum of all fetches.
+     */
+    public Map<String, String> renderTables(Set<String> tableKeys) {
+        return AsyncTableExecutor.await(renderTablesAsync(tableKeys, asyncExecutor.getDefaultTimeout()));
+    }
+
+    /**
+     * Drop cached HTML/PDF output of a table spec
+     */
+    public void invalidate(String tableKey) {
+        resultCache.specs().invalidate(tableKey);
+    }
+
+    private String renderUncached(String tableKey) throws Exception {
+        StringWriter writer = new StringWriter();
+        renderTable(tableKey, writer);
+        String html = writer.toString();
+        metrics.specs().output(tableKey, TableResultCache.HTML, html.length());
+        return html;
+    }
+
+    /**
+     * Writes the table straight to the caller's writer without building the HTML as a String.
+     */
+    public void renderTable(String tableKey, Writer out) throws Exception {
+        RenderPlan plan = renderPlans.plan(tableKey);
+        render(tableKey, plan, fetch(tableKey, plan), out);
+    }
+
+    /**
+     * Source rows of the plan. With TableSpec.coalesce, concurrent fetches of the
+     * same data source method, from any spec, share one call and one row list;
+     * every caller only reads it, applying its own criteria and columns.
+     */
+    private List<Map<String, Object>> fetch(String tableKey, RenderPlan plan) throws Exception {
+        try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.FETCH)) {
+            List<Map<String, Object>> rows = plan.getSpec().isCoalesce()
+                ? coalescer.execute(List.of("source", plan.getSourceKey()), plan::fetchRows)
+                : plan.fetchRows();
+            metrics.specs().rowsIn(tableKey, rows.size());
+            return rows;
+        }
+    }
+
+    /**
+     * Renders the rows matching the criteria. Parallel tables filter and project
+     * in a pass of their own; otherwise both run fused with rendering, so they
+     * are timed as part of it.
+     */
+    private void render(String tableKey, RenderPlan plan, List<Map<String, Object>> rows, Writer out)
+            throws Exception {
+        ParallelConfig parallel = plan.getSpec().getParallel();
+        if (parallel != null && parallel.appliesTo(rows.size())) {
+            List<Map<String, Object>> projected = project(tableKey, plan, rows, parallel);
+            try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.RENDER)) {
+                renderer.renderRows(projected.iterator(), plan.getColumns(),
+                    plan.getFormatters(), plan.getTemplate(), out);
+            }
+            metrics.specs().rowsOut(tableKey, projected.size());
+            return;
+        }
+        TableMetrics.RowCounter rendered = new TableMetrics.RowCounter();
+        try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.RENDER)) {
+            renderer.renderRows(
+                rendered.counted(renderer.project(rows.iterator(), plan.getColumns(), plan.getCriteria())),
+                plan.getColumns(), plan.getFormatters(), plan.getTemplate(), out);
+        }
+        metrics.specs().rowsOut(tableKey, rendered.getCount());
+    }
+
+    /**
+     * Writes the table as UTF-8 to a channel. Parallel tables whose template has
+     * head/rows/foot parts render body chunks concurrently into pooled buffers,
+     * each written in order as it completes and then returned to the pool.
+     */
+    public void renderTable(String tableKey, WritableByteChannel out) throws Exception {
+        RenderPlan plan = renderPlans.plan(tableKey);
+        List<Map<String, Object>> rows = fetch(tableKey, plan);
+        ParallelConfig parallel = plan.getSpec().getParallel();
+        if (parallel != null && parallel.appliesTo(rows.size()) && plan.getChunkedTemplate() != null) {
+            List<Map<String, Object>> projected = project(tableKey, plan, rows, parallel);
+            try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.RENDER)) {
+                renderer.renderChunks(projected, plan.getColumns(), plan.getFormatters(),
+                    plan.getChunkedTemplate(), parallel.getChunkSize(), pipelineExecutor, out);
+            }
+            metrics.specs().rowsOut(tableKey, projected.size());
+            return;
+        }
+        Writer writer = Channels.newWriter(out, StandardCharsets.UTF_8);
+        render(tableKey, plan, rows, writer);
+        writer.flush();
+    }
+
+    public void renderTable(String tableKey, OutputStream out) throws Exception {
+        renderTable(tableKey, Channels.newChannel(out));
+    }
+
+    // filter and projection run in the same parallel pass, so they are timed as the filter stage
+    private List<Map<String, Object>> project(String tableKey, RenderPlan plan, List<Map<String, Object>> rows,
+                                              ParallelConfig parallel) {
+        try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.FILTER)) {
+            // criteria only compare values, so one predicate is shared by all chunks
+            return pipelineExecutor.filterAndProject(rows, plan::getCriteria,
+                row -> TableRenderer.project(row, plan.getColumns()), parallel.getChunkSize());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+/**
+ * Markup of the stock table.ftl layout without FreeMarker. Values are
+ * written with toString() and HTML-escaped; null cells are empty. Columns
+ * with a CellFormatter are written as its text.
+ *
+ * Also the one place HTML escaping is defined; TableHtmlWriter and
+ * CellFormatter use entity() and escape() from here.
+ */
+final class HtmlTableMarkup {
+    static final String FOOT = "  </tbody>\n</table>";
+
+    private HtmlTableMarkup() {
+    }
+
+    static String head(List<ColumnDefinition> columns) {
+        StringBuilder sb = new StringBuilder("<table border=\"1\" class=\"data-table\">\n  <thead>\n    <tr>\n");
+        for (ColumnDefinition column : columns) {
+            sb.append("        <th>");
+            escape(String.valueOf(column.getLabel()), sb);
+            sb.append("</th>\n");
+        }
+        return sb.append("    </tr>\n  </thead>\n  <tbody>\n").toString();
+    }
+
+    static String rows(List<Map<String, Object>> rows, List<ColumnDefinition> columns) {
+        StringBuilder sb = new StringBuilder(rows.size() * columns.size() * 32);
+        for (Map<String, Object> row : rows) {
+            sb.append("      <tr>\n");
+            appendCells(row, columns, sb);
+            sb.append("      </tr>\n");
+        }
+        return sb.toString();
+    }
+
+    static void appendCells(Map<String, Object> row, List<ColumnDefinition> columns, StringBuilder sb) {
+        for (ColumnDefinition column : columns) {
+            sb.append("          <td>");
+            Object value = row.get(column.getFieldName());
+            if (column.getFormatter() != null) {
+                sb.append(column.getFormatter().format(value));
+            } else {
+                escape(value != null ? value.toString() : "", sb);
+            }
+            sb.append("</td>\n");
+        }
+    }
+
+    /**
+     * Entity replacing c in HTML text, or null when c is written as is
+     */
+    static String entity(char c) {
+        switch (c) {
+            case '<': return "&lt;";
+            case '>': return "&gt;";
+            case '&': return "&amp;";
+            case '"': return "&quot;";
+            case '\'': return "&#39;";
+            default: return null;
+        }
+    }
+
+    static void escape(String value, StringBuilder sb) {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String entity = entity(value.charAt(i));
+            if (entity != null) {
+                sb.append(value, start, i).append(entity);
+                start = i + 1;
+            }
+        }
+        sb.append(value, start, value.length());
+    }
+
+    /**
+     * value escaped; value itself when nothing needs escaping
+     */
+    static String escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (entity(value.charAt(i)) != null) {
+                StringBuilder sb = new StringBuilder(value.length() + 16);
+                escape(value, sb);
+                return sb.toString();
+            }
+        }
+        return value;
+    }
+}
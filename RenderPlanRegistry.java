@@ -0,0 +1,138 @@
+/**
+ * Compiles every TableRenderConfig spec into a RenderPlan when the context is
+ * refreshed: data source resolved to a bound MethodHandle, criteria compiled,
+ * column formatters compiled, template and its head/rows/foot parts (if any) loaded. A plan is rebuilt when its TableSpec instance is replaced
+ * by a configuration reload. A spec that fails to compile is logged and its
+ * failure thrown to the requests for that table; the other specs still load.
+ */
+@Slf4j
+@Component
+public class RenderPlanRegistry {
+    private final TableRenderConfig config;
+    private final TableRenderer renderer;
+    private final ApplicationContext context;
+    private final Map<String, RenderPlan> plans = new ConcurrentHashMap<>();
+    private final Map<String, CompileFailure> failures = new ConcurrentHashMap<>();
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void refresh() {
+        plans.keySet().retainAll(config.getSpecs().keySet());
+        failures.keySet().retainAll(config.getSpecs().keySet());
+        for (String tableKey : config.getSpecs().keySet()) {
+            try {
+                plan(tableKey);
+            } catch (RuntimeException e) {
+                log.error("Table spec {} failed to compile, its requests will fail", tableKey, e);
+            }
+        }
+    }
+
+    public RenderPlan plan(String tableKey) {
+        TableSpec spec = config.getSpecs().get(tableKey);
+        if (spec == null) {
+            throw new IllegalArgumentException("Table spec not found: " + tableKey);
+        }
+        RenderPlan plan = plans.get(tableKey);
+        if (plan == null || plan.getSpec() != spec) {
+            CompileFailure failure = failures.get(tableKey);
+            if (failure != null && failure.getSpec() == spec) {
+                throw new IllegalStateException("Failed to compile table spec " + tableKey, failure.getCause());
+            }
+            try {
+                plan = compile(tableKey, spec);
+            } catch (RuntimeException e) {
+                failures.put(tableKey, new CompileFailure(spec, e));
+                throw e;
+            }
+            failures.remove(tableKey);
+            plans.put(tableKey, plan);
+        }
+        return plan;
+    }
+
+    @Value
+    private static class CompileFailure {
+        TableSpec spec;
+        RuntimeException cause;
+    }
+
+    private RenderPlan compile(String tableKey, TableSpec spec) {
+        try {
+            String sourceKey = sourceKey(spec.getDataSource());
+            List<ColumnDef> columns = List.copyOf(spec.getColumns());
+            return new RenderPlan(spec,
+                sourceKey,
+                resolveDataSource(sourceKey),
+                buildCriteria(spec.getCriteria()),
+                columns,
+                renderer.formatters(columns),
+                renderer.getTemplate(spec.getTemplate()),
+                renderer.getChunkedTemplate(spec.getTemplate()));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to compile table spec " + tableKey, e);
+        }
+    }
+
+    /**
+     * "service.method()" as "service.method", the same for every spec reading that method
+     */
+    private static String sourceKey(String dataSourceExpr) {
+        String expr = dataSourceExpr.trim();
+        return expr.endsWith("()") ? expr.substring(0, expr.length() - 2) : expr;
+    }
+
+    /**
+     * Resolves "service.method" to a handle bound to the service bean
+     */
+    private MethodHandle resolveDataSource(String expr) throws ReflectiveOperationException {
+        int dot = expr.lastIndexOf('.');
+        if (dot < 0) {
+            throw new IllegalArgumentException("Expected service.method(): " + expr);
+        }
+        Object bean = context.getBean(expr.substring(0, dot));
+        Method method = bean.getClass().getMethod(expr.substring(dot + 1));
+        // service beans are often package-private classes; method.invoke reached them, so must the handle
+        method.trySetAccessible();
+        return MethodHandles.lookup().unreflect(method)
+            .bindTo(bean)
+            .asType(MethodType.methodType(Object.class));
+    }
+
+    private Predicate<Map<String, Object>> buildCriteria(Map<String, Object> criteria) {
+        if (criteria == null || criteria.isEmpty()) {
+            return row -> true;
+        }
+        String[] fields = criteria.keySet().toArray(new String[0]);
+        Object[] values = criteria.values().toArray();
+        return row -> {
+            for (int i = 0; i < fields.length; i++) {
+                if (!Objects.equals(row.get(fields[i]), values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+}
+
+@Value
+public class RenderPlan {
+    TableSpec spec;
+    String sourceKey;
+    MethodHandle dataSource;
+    Predicate<Map<String, Object>> criteria;
+    List<ColumnDef> columns;
+    CellFormatter[] formatters;
+    Template template;
+    ChunkedTemplate chunkedTemplate;
+
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> fetchRows() {
+        try {
+            Object rows = (Object) dataSource.invokeExact();
+            return rows != null ? (List<Map<String, Object>>) rows : Collections.emptyList();
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to fetch data from " + spec.getDataSource(), e);
+        }
+    }
+}
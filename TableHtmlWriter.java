@@ -0,0 +1,234 @@
+/**
+ * Template-free writer for the stock table.ftl layout. Produces the same
+ * markup as the template (same indentation and line breaks, numbers in the
+ * locale's number format, booleans as true/false) without FreeMarker's
+ * interpreter and object wrapping. Cell values and labels are HTML-escaped
+ * and null cells are written as empty. Columns with a CellFormatter are
+ * written as its (already escaped) text.
+ *
+ * The header text is built once per writer; rows are written through a
+ * reusable char buffer. Instances are thread-safe, every write call uses its
+ * own buffer and number format.
+ */
+public class TableHtmlWriter {
+    public static final String TEMPLATE = "table.ftl";
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] ROW_START = "      <tr>\n".toCharArray();
+    private static final char[] ROW_END = "      </tr>\n".toCharArray();
+    private static final char[] CELL_START = "          <td>".toCharArray();
+    private static final char[] CELL_END = "</td>\n".toCharArray();
+    private static final char[] FOOT = "  </tbody>\n</table>".toCharArray();
+
+    private final String[] fields;
+    private final CellFormatter[] formatters;
+    private final char[] head;
+    private final Locale locale;
+    private final char groupingSeparator;
+    private final char minusSign;
+    private final char zeroDigit;
+    private final boolean fastIntegers;
+
+    public TableHtmlWriter(List<ColumnDef> columns, Locale locale) {
+        this(columns, new CellFormatter[columns.size()], locale);
+    }
+
+    public TableHtmlWriter(List<ColumnDef> columns, CellFormatter[] formatters, Locale locale) {
+        this.fields = columns.stream().map(ColumnDef::getField).toArray(String[]::new);
+        this.formatters = formatters;
+        this.locale = locale;
+
+        StringBuilder sb = new StringBuilder("<table border=\"1\" class=\"data-table\">\n  <thead>\n    <tr>\n");
+        for (ColumnDef column : columns) {
+            sb.append("        <th>");
+            HtmlTableMarkup.escape(String.valueOf(column.getLabel()), sb);
+            sb.append("</th>\n");
+        }
+        sb.append("    </tr>\n  </thead>\n  <tbody>\n");
+        this.head = sb.toString().toCharArray();
+
+        // integers are formatted by hand only when the locale uses plain
+        // groups of three; anything else goes through NumberFormat
+        NumberFormat format = NumberFormat.getNumberInstance(locale);
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.groupingSeparator = symbols.getGroupingSeparator();
+        this.minusSign = symbols.getMinusSign();
+        this.zeroDigit = symbols.getZeroDigit();
+        this.fastIntegers = format instanceof DecimalFormat
+            && ((DecimalFormat) format).isGroupingUsed()
+            && ((DecimalFormat) format).getGroupingSize() == 3
+            && ((DecimalFormat) format).getPositivePrefix().isEmpty()
+            && ((DecimalFormat) format).getPositiveSuffix().isEmpty()
+            && ((DecimalFormat) format).getNegativePrefix().equals(String.valueOf(minusSign))
+            && ((DecimalFormat) format).getNegativeSuffix().isEmpty();
+    }
+
+    public void write(Iterator<Map<String, Object>> rows, Writer out) throws IOException {
+        Output output = new Output(out);
+        output.append(head);
+        writeRows(rows, output);
+        output.append(FOOT);
+        output.flush();
+    }
+
+    /**
+     * The three parts of write(), for callers that render the body in chunks;
+     * head, the rows of every chunk in order and foot add up to write()'s output
+     */
+    public void writeHead(Writer out) throws IOException {
+        out.write(head);
+        out.flush();
+    }
+
+    public void writeRows(Iterator<Map<String, Object>> rows, Writer out) throws IOException {
+        Output output = new Output(out);
+        writeRows(rows, output);
+        output.flush();
+    }
+
+    public void writeFoot(Writer out) throws IOException {
+        out.write(FOOT);
+        out.flush();
+    }
+
+    private void writeRows(Iterator<Map<String, Object>> rows, Output output) throws IOException {
+        while (rows.hasNext()) {
+            Map<String, Object> row = rows.next();
+            output.append(ROW_START);
+            for (int i = 0; i < fields.length; i++) {
+                output.append(CELL_START);
+                if (formatters[i] != null) {
+                    output.append(formatters[i].format(row.get(fields[i])));
+                } else {
+                    writeValue(row.get(fields[i]), output);
+                }
+                output.append(CELL_END);
+            }
+            output.append(ROW_END);
+        }
+    }
+
+    private void writeValue(Object value, Output output) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof String) {
+            output.appendEscaped((String) value);
+        } else if (fastIntegers && (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte)) {
+            writeInteger(((Number) value).longValue(), output);
+        } else if (value instanceof Number) {
+            output.appendEscaped(output.numberFormat().format(value));
+        } else if (value instanceof Boolean) {
+            output.append((Boolean) value ? "true" : "false");
+        } else {
+            output.appendEscaped(value.toString());
+        }
+    }
+
+    /**
+     * Digits with a grouping separator every three places, as DecimalFormat would
+     */
+    private void writeInteger(long value, Output output) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            output.appendEscaped(output.numberFormat().format(value));
+            return;
+        }
+        char[] digits = output.scratch;
+        int pos = digits.length;
+        long remaining = Math.abs(value);
+        int count = 0;
+        do {
+            if (count > 0 && count % 3 == 0) {
+                digits[--pos] = groupingSeparator;
+            }
+            digits[--pos] = (char) (zeroDigit + (int) (remaining % 10));
+            remaining /= 10;
+            count++;
+        } while (remaining != 0);
+        if (value < 0) {
+            digits[--pos] = minusSign;
+        }
+        output.append(digits, pos, digits.length - pos);
+    }
+
+    /**
+     * Per-call output state: char buffer in front of the writer, scratch
+     * space for integer digits and a lazily created NumberFormat
+     */
+    private class Output {
+        private final Writer out;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final char[] scratch = new char[32];
+        private int length;
+        private NumberFormat numberFormat;
+
+        Output(Writer out) {
+            this.out = out;
+        }
+
+        NumberFormat numberFormat() {
+            if (numberFormat == null) {
+                numberFormat = NumberFormat.getNumberInstance(locale);
+            }
+            return numberFormat;
+        }
+
+        void append(char[] chars) throws IOException {
+            append(chars, 0, chars.length);
+        }
+
+        void append(char[] chars, int off, int len) throws IOException {
+            if (length + len > buffer.length) {
+                drain();
+                if (len > buffer.length) {
+                    out.write(chars, off, len);
+                    return;
+                }
+            }
+            System.arraycopy(chars, off, buffer, length, len);
+            length += len;
+        }
+
+        void append(String s) throws IOException {
+            append(s, 0, s.length());
+        }
+
+        void append(String s, int from, int to) throws IOException {
+            int len = to - from;
+            if (length + len > buffer.length) {
+                drain();
+                if (len > buffer.length) {
+                    out.write(s, from, len);
+                    return;
+                }
+            }
+            s.getChars(from, to, buffer, length);
+            length += len;
+        }
+
+        void appendEscaped(String s) throws IOException {
+            int start = 0;
+            for (int i = 0; i < s.length(); i++) {
+                String entity = HtmlTableMarkup.entity(s.charAt(i));
+                if (entity == null) {
+                    continue;
+                }
+                append(s, start, i);
+                append(entity);
+                start = i + 1;
+            }
+            append(s, start, s.length());
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+}
@@ -1,6 +1,10 @@
 @Service
 public class TableRenderer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+
     private final Configuration freemarkerConfig;
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
 
     public TableRenderer() {
         freemarkerConfig = new Configuration(Configuration.VERSION_2_3_32);
@@ -8,34 +12,378 @@ public class TableRenderer {
         freemarkerConfig.setDefaultEncoding("UTF-8");
     }
 
-    public String renderTable(List<Map<String, Object>> source, 
-                             List<ColumnDef> columns, 
+    public String renderTable(List<Map<String, Object>> source,
+                             List<ColumnDef> columns,
                              Predicate<Map<String, Object>> criteria) throws Exception {
-        List<Map<String, Object>> filteredData = source.stream()
-            .filter(criteria)
-            .map(row -> {
-                Map<String, Object> projected = new HashMap<>();
-                columns.forEach(col -> projected.put(col.getField(), row.get(col.getField())));
-                return projected;
-            })
-            .collect(Collectors.toList());
+        StringWriter writer = new StringWriter();
+        renderTable(source.iterator(), columns, criteria, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Streaming variant: rows are filtered, projected and rendered one at a time,
+     * so heap use does not grow with the number of rows. The stream is not closed here.
+     */
+    public void renderTable(Stream<Map<String, Object>> source,
+                            List<ColumnDef> columns,
+                            Predicate<Map<String, Object>> criteria,
+                            Writer out) throws Exception {
+        renderTable(source.iterator(), columns, criteria, out);
+    }
+
+    /**
+     * Renders straight into a servlet/response output stream as UTF-8.
+     */
+    public void renderTable(Iterator<Map<String, Object>> source,
+                            List<ColumnDef> columns,
+                            Predicate<Map<String, Object>> criteria,
+                            OutputStream out) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        renderTable(source, columns, criteria, writer);
+        writer.flush();
+    }
+
+    public void renderTable(Iterator<Map<String, Object>> source,
+                            List<ColumnDef> columns,
+                            Predicate<Map<String, Object>> criteria,
+                            Writer out) throws Exception {
+        renderTable(source, columns, criteria, getTemplate("table.ftl"), out);
+    }
+
+    public void renderTable(Iterator<Map<String, Object>> source,
+                            List<ColumnDef> columns,
+                            Predicate<Map<String, Object>> criteria,
+                            Template template,
+                            Writer out) throws Exception {
+        renderRows(new ProjectingIterator(source, columns, criteria), columns, template, out);
+    }
+
+    /**
+     * Renders rows that are already filtered and projected, e.g. by the parallel pipeline.
+     * The stock table.ftl is written by TableHtmlWriter; other templates go through FreeMarker.
+     */
+    public void renderRows(Iterator<Map<String, Object>> rows,
+                           List<ColumnDef> columns,
+                           Template template,
+                           Writer out) throws Exception {
+        renderRows(rows, columns, formatters(columns), template, out);
+    }
 
+    /**
+     * Same, with the columns' formatters compiled up front (see RenderPlan), so
+     * their value caches outlive a single render
+     */
+    public void renderRows(Iterator<Map<String, Object>> rows,
+                           List<ColumnDef> columns,
+                           CellFormatter[] cellFormatters,
+                           Template template,
+                           Writer out) throws Exception {
+        if (TableHtmlWriter.TEMPLATE.equals(template.getName())) {
+            new TableHtmlWriter(columns, cellFormatters, freemarkerConfig.getLocale()).write(rows, out);
+            return;
+        }
+
+        // DefaultObjectWrapper exposes an Iterator as a single-pass sequence, so
+        // <#list filteredData as row> pulls rows lazily instead of from a materialized list
         Map<String, Object> dataModel = new HashMap<>();
-        dataModel.put("filteredData", filteredData);
+        dataModel.put("filteredData", formatted(rows, columns, cellFormatters));
         dataModel.put("columns", columns.stream().map(ColumnDef::toMap).collect(Collectors.toList()));
 
-        Template template = freemarkerConfig.getTemplate("table.ftl");
-        StringWriter writer = new StringWriter();
-        template.process(dataModel, writer);
-        return writer.toString();
+        template.process(dataModel, out);
+    }
+
+    /**
+     * Lazily filtered and projected view of the source, for callers that render it piecewise
+     */
+    public Iterator<Map<String, Object>> project(Iterator<Map<String, Object>> source,
+                                                 List<ColumnDef> columns,
+                                                 Predicate<Map<String, Object>> criteria) {
+        return new ProjectingIterator(source, columns, criteria);
+    }
+
+    static Map<String, Object> project(Map<String, Object> row, List<ColumnDef> columns) {
+        Map<String, Object> projected = new HashMap<>();
+        columns.forEach(col -> projected.put(col.getField(), row.get(col.getField())));
+        return projected;
+    }
+
+    /**
+     * Renders already projected rows with a chunked template: the header on the
+     * calling thread, each chunk of chunkSize rows of the body on the pipeline
+     * pool, each into its own pooled buffer. Each buffer is written to the
+     * channel in order as soon as its chunk and those before it are done, then
+     * returned to the pool; only a bounded number of chunks is rendered ahead of
+     * the writes (see TablePipelineExecutor.forEachOrdered). Output is byte-identical to
+     * processing the single template the parts were split from; table.ftl is
+     * written by TableHtmlWriter, as in renderRows.
+     */
+    public void renderChunks(List<Map<String, Object>> rows,
+                             List<ColumnDef> columns,
+                             ChunkedTemplate template,
+                             int chunkSize,
+                             TablePipelineExecutor executor,
+                             WritableByteChannel out) throws Exception {
+        renderChunks(rows, columns, formatters(columns), template, chunkSize, executor, out);
+    }
+
+    public void renderChunks(List<Map<String, Object>> rows,
+                             List<ColumnDef> columns,
+                             CellFormatter[] cellFormatters,
+                             ChunkedTemplate template,
+                             int chunkSize,
+                             TablePipelineExecutor executor,
+                             WritableByteChannel out) throws Exception {
+        Part head;
+        Function<List<Map<String, Object>>, Part> body;
+        Part foot;
+        if (TableHtmlWriter.TEMPLATE.equals(template.getName())) {
+            // same writer as renderRows, so the bytes match the unchunked paths
+            TableHtmlWriter html = new TableHtmlWriter(columns, cellFormatters, freemarkerConfig.getLocale());
+            head = html::writeHead;
+            body = chunk -> writer -> html.writeRows(chunk.iterator(), writer);
+            foot = html::writeFoot;
+        } else {
+            List<Map<String, Object>> columnModel = columns.stream().map(ColumnDef::toMap).collect(Collectors.toList());
+            head = writer -> process(template.getHead(), Collections.emptyList(), columnModel, writer);
+            body = chunk -> writer -> process(template.getRows(), formatted(chunk, columns, cellFormatters),
+                columnModel, writer);
+            foot = writer -> process(template.getFoot(), Collections.emptyList(), columnModel, writer);
+        }
+
+        List<Callable<ByteBuffer>> tasks = new ArrayList<>();
+        for (int start = 0; start < rows.size(); start += chunkSize) {
+            Part chunk = body.apply(rows.subList(start, Math.min(rows.size(), start + chunkSize)));
+            tasks.add(() -> renderPart(chunk));
+        }
+
+        writeAndRelease(renderPart(head), out);
+        executor.forEachOrdered(tasks, part -> writeAndRelease(part, out), this::release);
+        writeAndRelease(renderPart(foot), out);
+    }
+
+    /**
+     * Compiled formatter per column, null for columns without format declarations
+     */
+    public CellFormatter[] formatters(List<ColumnDef> columns) {
+        CellFormatter[] result = new CellFormatter[columns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = columns.get(i).compileFormatter(freemarkerConfig.getLocale());
+        }
+        return result;
+    }
+
+    /**
+     * Rows for FreeMarker templates, formatted columns replaced by their text
+     */
+    private static Iterator<Map<String, Object>> formatted(Iterator<Map<String, Object>> rows,
+                                                           List<ColumnDef> columns,
+                                                           CellFormatter[] cellFormatters) {
+        if (Arrays.stream(cellFormatters).allMatch(Objects::isNull)) {
+            return rows;
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                return format(rows.next(), columns, cellFormatters);
+            }
+        };
+    }
+
+    private static List<Map<String, Object>> formatted(List<Map<String, Object>> rows,
+                                                       List<ColumnDef> columns,
+                                                       CellFormatter[] cellFormatters) {
+        if (Arrays.stream(cellFormatters).allMatch(Objects::isNull)) {
+            return rows;
+        }
+        List<Map<String, Object>> formatted = new ArrayList<>(rows.size());
+        rows.forEach(row -> formatted.add(format(row, columns, cellFormatters)));
+        return formatted;
+    }
+
+    private static Map<String, Object> format(Map<String, Object> row,
+                                              List<ColumnDef> columns,
+                                              CellFormatter[] cellFormatters) {
+        Map<String, Object> formatted = new HashMap<>(row);
+        for (int i = 0; i < cellFormatters.length; i++) {
+            if (cellFormatters[i] != null) {
+                String field = columns.get(i).getField();
+                formatted.put(field, cellFormatters[i].format(row.get(field)));
+            }
+        }
+        return formatted;
+    }
+
+    private static void process(Template template,
+                                List<Map<String, Object>> rows,
+                                List<Map<String, Object>> columnModel,
+                                Writer out) throws Exception {
+        Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("filteredData", rows);
+        dataModel.put("columns", columnModel);
+        template.process(dataModel, out);
+    }
+
+    private ByteBuffer renderPart(Part part) throws Exception {
+        PooledBufferStream stream = new PooledBufferStream(acquire());
+        try {
+            Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            part.writeTo(writer);
+            writer.flush();
+        } catch (Exception e) {
+            release(stream.buffer);
+            throw e;
+        }
+        return stream.buffer.flip();
+    }
+
+    private void writeAndRelease(ByteBuffer part, WritableByteChannel out) throws IOException {
+        try {
+            while (part.hasRemaining()) {
+                out.write(part);
+            }
+        } finally {
+            release(part);
+        }
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void release(ByteBuffer buffer) {
+        // buffers grown past the default size for one large chunk are not kept
+        if (buffer.capacity() == BUFFER_SIZE && bufferPool.size() < MAX_POOLED_BUFFERS) {
+            bufferPool.offer(buffer.clear());
+        }
+    }
+
+    public Template getTemplate(String name) throws IOException {
+        return freemarkerConfig.getTemplate(name);
+    }
+
+    /**
+     * Head/rows/foot parts of a template ("table.ftl" -> "table-head.ftl",
+     * "table-rows.ftl", "table-foot.ftl"), or null if the template has no parts.
+     */
+    public ChunkedTemplate getChunkedTemplate(String name) throws IOException {
+        String base = name.endsWith(".ftl") ? name.substring(0, name.length() - 4) : name;
+        try {
+            return new ChunkedTemplate(name,
+                freemarkerConfig.getTemplate(base + "-head.ftl"),
+                freemarkerConfig.getTemplate(base + "-rows.ftl"),
+                freemarkerConfig.getTemplate(base + "-foot.ftl"));
+        } catch (TemplateNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One head, body chunk or foot of a chunked render
+     */
+    private interface Part {
+        void writeTo(Writer out) throws Exception;
     }
+
+    /**
+     * OutputStream over a ByteBuffer that moves to a larger buffer when full
+     */
+    private static class PooledBufferStream extends OutputStream {
+        private ByteBuffer buffer;
+
+        PooledBufferStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) {
+            ensureCapacity(len);
+            buffer.put(bytes, off, len);
+        }
+
+        private void ensureCapacity(int len) {
+            if (buffer.remaining() < len) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(
+                    Math.max(buffer.capacity() * 2, buffer.position() + len));
+                grown.put(buffer.flip());
+                buffer = grown;
+            }
+        }
+    }
+
+    /**
+     * Lazily filters and projects the source, holding at most one row ahead.
+     */
+    private static class ProjectingIterator implements Iterator<Map<String, Object>> {
+        private final Iterator<Map<String, Object>> source;
+        private final List<ColumnDef> columns;
+        private final Predicate<Map<String, Object>> criteria;
+        private Map<String, Object> next;
+
+        ProjectingIterator(Iterator<Map<String, Object>> source,
+                           List<ColumnDef> columns,
+                           Predicate<Map<String, Object>> criteria) {
+            this.source = source;
+            this.columns = columns;
+            this.criteria = criteria;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && source.hasNext()) {
+                Map<String, Object> row = source.next();
+                if (criteria.test(row)) {
+                    next = project(row, columns);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map<String, Object> row = next;
+            next = null;
+            return row;
+        }
+    }
+}
+
+@Value
+public class ChunkedTemplate {
+    String name;
+    Template head;
+    Template rows;
+    Template foot;
 }
 
 @Data
 public class ColumnDef {
     private String field;
     private String label;
+    private String numberFormat;
+    private String dateFormat;
+    private Map<String, String> labels;
+    private String escape;
+
+    public CellFormatter compileFormatter(Locale locale) {
+        return CellFormatter.compile(numberFormat, dateFormat, labels, escape, locale);
+    }
+
     public Map<String, Object> toMap() {
         return Map.of("field", field, "label", label);
     }
-}
\ No newline at end of file
+}
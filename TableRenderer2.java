@@ -1,20 +1,103 @@
 @Service
 public class ConfiguredTableRenderer {
+    private static final String DOCUMENT_FOOT = """
+        </body>
+        </html>
+        """;
+
     private final TableRenderer tableRenderer;
     private final HtmlToPdfService pdfService;
     private final TableRenderConfig config;
+    private final RenderPlanRegistry renderPlans;
+    private final TableResultCache resultCache;
+    private final TableMetrics metrics;
 
     public byte[] renderTableAsPdf(String tableKey) throws Exception {
-        // Generate HTML first
-        String htmlTable = renderTable(tableKey);
-        
-        // Wrap in full HTML document for better PDF rendering
-        String fullHtml = wrapInHtmlDocument(htmlTable, tableKey);
-        
-        return pdfService.convertHtmlToPdf(fullHtml);
+        TableSpec spec = config.getSpecs().get(tableKey);
+        if (spec.getCache() != null && spec.getCache().caches(TableResultCache.PDF)) {
+            return resultCache.specs().get(tableKey, spec.getCache(), TableResultCache.PDF, null,
+                () -> renderPdfUncached(tableKey));
+        }
+        return renderPdfUncached(tableKey);
+    }
+
+    private byte[] renderPdfUncached(String tableKey) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderTableAsPdf(tableKey, out);
+        metrics.specs().output(tableKey, TableResultCache.PDF, out.size());
+        return out.toByteArray();
+    }
+
+    /**
+     * Streams the PDF to out. Rows are rendered in chunks of TableSpec.pdfPageSize,
+     * each chunk one HTML document converted on its own and spooled to a temp file;
+     * the chunk PDFs are then merged into out with a temp-file-only buffer. The title
+     * is only in the first chunk, and openhtmltopdf repeats the table header on every
+     * physical page (thead as table-header-group, -fs-table-paginate). A chunk
+     * always starts on a new page, so its last page may be partly empty.
+     *
+     * The source rows come from the data source as one list and are on the heap in
+     * full; the HTML and PDF being built are bounded by one chunk.
+     */
+    public void renderTableAsPdf(String tableKey, OutputStream out) throws Exception {
+        RenderPlan plan = renderPlans.plan(tableKey);
+        int pageSize = Math.max(1, plan.getSpec().getPdfPageSize());
+        List<Map<String, Object>> source;
+        try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.FETCH)) {
+            source = plan.fetchRows();
+        }
+        metrics.specs().rowsIn(tableKey, source.size());
+        Iterator<Map<String, Object>> rows = tableRenderer.project(
+            source.iterator(), plan.getColumns(), plan.getCriteria());
+
+        List<File> pages = new ArrayList<>();
+        try {
+            boolean first = true;
+            do {
+                List<Map<String, Object>> pageRows = new ArrayList<>(pageSize);
+                // the criteria and projection run as rows are taken, so both are the filter stage
+                try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.FILTER)) {
+                    while (pageRows.size() < pageSize && rows.hasNext()) {
+                        pageRows.add(rows.next());
+                    }
+                }
+
+                metrics.specs().rowsOut(tableKey, pageRows.size());
+
+                StringWriter html = new StringWriter();
+                try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.RENDER)) {
+                    html.write(documentHead(tableKey, first));
+                    tableRenderer.renderRows(pageRows.iterator(), plan.getColumns(), plan.getFormatters(),
+                        plan.getTemplate(), html);
+                    html.write(DOCUMENT_FOOT);
+                }
+
+                File page = Files.createTempFile("table-" + tableKey + "-", ".pdf").toFile();
+                pages.add(page);
+                try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.PDF)) {
+                    Files.write(page.toPath(), pdfService.convertHtmlToPdf(html.toString()));
+                }
+                first = false;
+            } while (rows.hasNext());
+
+            try (TableMetrics.Stage stage = metrics.specs().stage(tableKey, TableMetrics.MERGE)) {
+                PDFMergerUtility merger = new PDFMergerUtility();
+                for (File page : pages) {
+                    merger.addSource(page);
+                }
+                merger.setDestinationStream(out);
+                merger.mergeDocuments(MemoryUsageSetting.setupTempFileOnly());
+            }
+        } finally {
+            for (File page : pages) {
+                Files.deleteIfExists(page.toPath());
+            }
+        }
     }
-    
-    private String wrapInHtmlDocument(String tableHtml, String tableKey) {
+
+    // Wrap in full HTML document for better PDF rendering; only the first chunk has the title
+    private String documentHead(String tableKey, boolean first) {
+        String title = tableKey.replace("-", " ").toUpperCase();
         return """
             <!DOCTYPE html>
             <html>
@@ -22,11 +105,15 @@ public class ConfiguredTableRenderer {
                 <meta charset="UTF-8">
                 <title>%s Report</title>
                 <style>
-                    body { font-family: Arial, sans-serif; margin: 20px; }
+                    @page { margin: 20px; }
+                    body { font-family: Arial, sans-serif; margin: 0; }
                     .data-table { 
-                        width: 100%; border-collapse: collapse; 
-                        margin: 20px 0; font-size: 14px;
+                        width: 100%%; border-collapse: collapse; 
+                        margin: %s; font-size: 14px;
+                        -fs-table-paginate: paginate;
                     }
+                    .data-table thead { display: table-header-group; }
+                    .data-table tr { page-break-inside: avoid; }
                     .data-table th, .data-table td { 
                         border: 1px solid #ddd; padding: 12px; 
                         text-align: left; 
@@ -36,12 +123,7 @@ public class ConfiguredTableRenderer {
                 </style>
             </head>
             <body>
-                <h1>%s Report</h1>
-                %s
-            </body>
-            </html>
-            """.formatted(tableKey.replace("-", " ").toUpperCase(), 
-                         tableKey.replace("-", " ").toUpperCase(), 
-                         tableHtml);
+            %s
+            """.formatted(title, first ? "20px 0" : "0", first ? "<h1>" + title + " Report</h1>" : "");
     }
-}
\ No newline at end of file
+}
@@ -9,5 +9,10 @@ public class TableRenderConfig {
         private List<ColumnDef> columns = new ArrayList<>();
         private Map<String, Object> criteria;
         private String template = "table.ftl";
+        private CacheConfig cache;
+        private ParallelConfig parallel;
+        private int pdfPageSize = 500;
+        private TableQuery query;
+        private boolean coalesce = true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,212 @@
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime evaluation order of one compiled and/or node, as a permutation of
+ * its children's positions. Every filter compiled from the same node (e.g.
+ * the per-thread copies of a parallel table) shares one instance, so their
+ * samples add up to the same window.
+ *
+ * About one row in sampleRate is a sample: it is evaluated in the current
+ * order and short-circuits like any other row, but every child it reaches is
+ * timed and its result counted. A child is thus only ever run on rows that
+ * passed (and) or failed (or) the children before it, as without sampling.
+ * After reorderSamples sampled rows the children are re-sorted by expected
+ * cost per decided row, cost / (1 - pass rate) for and, cost / pass rate for
+ * or, and the counters start a new window. Children never reached in a
+ * window keep their place behind the measured ones.
+ *
+ * Children that can throw (custom predicates, compare and range, see
+ * FilterCompiler.mayThrow) are pinned: they keep their position and only the
+ * conditions between two pinned children are re-ordered, so a condition
+ * guarding one (e.g. is-not-null or a type check before it) still runs first. Counters are LongAdders, samples are picked with the
+ * thread's own random generator and the order is published through a
+ * volatile field, so evaluating threads never lock or share a written field.
+ */
+class AdaptiveFilterOrder {
+    private final String[] labels;
+    private final boolean[] pinned;
+    private final boolean conjunction;
+    private final int sampleRate;
+    private final int reorderSamples;
+
+    private final LongAdder[] evaluations;
+    private final LongAdder[] passes;
+    private final LongAdder[] nanos;
+    private final AtomicInteger windowSamples = new AtomicInteger();
+    private final AtomicInteger reorders = new AtomicInteger();
+    private volatile int[] order;
+    private volatile JunctionStatistics lastWindow;
+
+    AdaptiveFilterOrder(String[] labels, boolean[] pinned, boolean conjunction,
+                        int sampleRate, int reorderSamples) {
+        this.labels = labels;
+        this.pinned = pinned;
+        this.conjunction = conjunction;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.reorderSamples = Math.max(1, reorderSamples);
+        this.evaluations = adders(labels.length);
+        this.passes = adders(labels.length);
+        this.nanos = adders(labels.length);
+        int[] initial = new int[labels.length];
+        for (int i = 0; i < initial.length; i++) {
+            initial[i] = i;
+        }
+        this.order = initial;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Number of children this order is for
+     */
+    int size() {
+        return labels.length;
+    }
+
+    /**
+     * Positions of the children in evaluation order
+     */
+    int[] order() {
+        return order;
+    }
+
+    boolean sample() {
+        return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    /**
+     * Evaluates a sampled row in the current order, short-circuiting as
+     * usual, and records cost and result of every child it reaches
+     */
+    boolean evaluate(CompiledFilter[] children, Map<String, Object> record) {
+        boolean result = conjunction;
+        for (int i : order) {
+            long start = System.nanoTime();
+            boolean passed = children[i].test(record);
+            nanos[i].add(System.nanoTime() - start);
+            evaluations[i].increment();
+            if (passed) {
+                passes[i].increment();
+            }
+            // and stops at the first failing child, or at the first passing one
+            if (passed != conjunction) {
+                result = !conjunction;
+                break;
+            }
+        }
+        if (windowSamples.incrementAndGet() == reorderSamples) {
+            reorder();
+        }
+        return result;
+    }
+
+    /**
+     * Statistics of the last completed window, or of the compile-time order
+     * with no samples when no window has completed yet
+     */
+    JunctionStatistics statistics() {
+        JunctionStatistics window = lastWindow;
+        if (window != null) {
+            return window;
+        }
+        List<JunctionStatistics.Condition> conditions = new ArrayList<>();
+        for (String label : labels) {
+            conditions.add(new JunctionStatistics.Condition(label, 0, 0, 0));
+        }
+        return new JunctionStatistics(conjunction ? "and" : "or", conditions, 0);
+    }
+
+    private void reorder() {
+        int[] current = order;
+        long[] samples = new long[labels.length];
+        double[] rank = new double[labels.length];
+        double[] passRate = new double[labels.length];
+        double[] avgNanos = new double[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            samples[i] = evaluations[i].sumThenReset();
+            long passed = passes[i].sumThenReset();
+            long time = nanos[i].sumThenReset();
+            if (samples[i] == 0) {
+                rank[i] = Double.MAX_VALUE;
+                continue;
+            }
+            passRate[i] = Math.min(1, (double) passed / samples[i]);
+            avgNanos[i] = (double) time / samples[i];
+            // share of rows this child decides on its own: fails for and, passes for or
+            double decided = conjunction ? 1 - passRate[i] : passRate[i];
+            rank[i] = decided > 0 ? avgNanos[i] / decided : Double.MAX_VALUE;
+        }
+        windowSamples.set(0);
+
+        // sort each run of unpinned slots; stable, so ties keep the current order
+        Integer[] reordered = new Integer[current.length];
+        for (int i = 0; i < current.length; i++) {
+            reordered[i] = current[i];
+        }
+        int runStart = 0;
+        for (int slot = 0; slot <= current.length; slot++) {
+            if (slot == current.length || pinned[current[slot]]) {
+                Arrays.sort(reordered, runStart, slot, Comparator.comparingDouble(p -> rank[p]));
+                runStart = slot + 1;
+            }
+        }
+
+        int[] next = new int[current.length];
+        List<JunctionStatistics.Condition> conditions = new ArrayList<>();
+        for (int i = 0; i < next.length; i++) {
+            int p = reordered[i];
+            next[i] = p;
+            conditions.add(new JunctionStatistics.Condition(labels[p], samples[p], passRate[p], avgNanos[p]));
+        }
+        order = next;
+        lastWindow = new JunctionStatistics(conjunction ? "and" : "or", conditions, reorders.incrementAndGet());
+    }
+}
+
+/**
+ * Evaluation order chosen for one and/or node, cheapest expected cost first,
+ * with the sampled statistics it was chosen from
+ */
+class JunctionStatistics {
+    private final String type;
+    private final List<Condition> conditions;
+    private final int reorders;
+
+    JunctionStatistics(String type, List<Condition> conditions, int reorders) {
+        this.type = type;
+        this.conditions = conditions;
+        this.reorders = reorders;
+    }
+
+    public String getType() { return type; }
+    public List<Condition> getConditions() { return conditions; }
+    public int getReorders() { return reorders; }
+
+    static class Condition {
+        private final String label;
+        private final long samples;
+        private final double passRate;
+        private final double averageNanos;
+
+        Condition(String label, long samples, double passRate, double averageNanos) {
+            this.label = label;
+            this.samples = samples;
+            this.passRate = passRate;
+            this.averageNanos = averageNanos;
+        }
+
+        public String getLabel() { return label; }
+        public long getSamples() { return samples; }
+        public double getPassRate() { return passRate; }
+        public double getAverageNanos() { return averageNanos; }
+    }
+}
@@ -0,0 +1,161 @@
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking table work (data source calls, filtering, rendering) off the
+ * request thread. Uses a virtual thread per task when the runtime has them
+ * (JDK 21+) and asyncVirtualThreads is on, otherwise a pool of at most
+ * asyncThreads daemon platform threads with a queue of asyncQueueCapacity
+ * tasks. Tasks beyond that are rejected: their future fails at once with a
+ * RejectedExecutionException instead of piling up.
+ *
+ * Futures time out after the given or the configured default timeout.
+ * Cancelling a future, or its timing out, interrupts the task, so data
+ * sources that honour interruption (JDBC, HTTP clients) stop early.
+ */
+@Component
+class AsyncTableExecutor {
+    private final ExecutorService executor;
+    private final Duration defaultTimeout;
+
+    public AsyncTableExecutor(TableConfigProperties configProperties) {
+        this.executor = configProperties.isAsyncVirtualThreads()
+            ? virtualThreadExecutor().orElseGet(() -> platformExecutor(configProperties))
+            : platformExecutor(configProperties);
+        this.defaultTimeout = configProperties.getAsyncTimeout();
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        return submit(task, defaultTimeout);
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task, Duration timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        // cancel() and orTimeout() only complete the future; interrupt the task as well
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                running.cancel(true);
+            }
+        });
+        if (timeout != null) {
+            result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    /**
+     * Runs one task per key concurrently; the result completes when all do,
+     * keyed in the iteration order of keys. The first failure fails the
+     * batch and cancels the remaining tasks.
+     */
+    public <T> CompletableFuture<Map<String, T>> submitAll(Collection<String> keys,
+                                                          TaskFactory<T> taskFactory,
+                                                          Duration timeout) {
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (String key : keys) {
+            futures.put(key, submit(taskFactory.task(key), timeout));
+        }
+
+        CompletableFuture<Map<String, T>> batch = new CompletableFuture<>();
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    batch.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                    return;
+                }
+                Map<String, T> results = new LinkedHashMap<>();
+                futures.forEach((key, future) -> results.put(key, future.join()));
+                batch.complete(results);
+            });
+        futures.values().forEach(future -> future.whenComplete((value, error) -> {
+            if (error != null) {
+                batch.completeExceptionally(error);
+            }
+        }));
+        batch.whenComplete((value, error) -> {
+            if (error != null) {
+                futures.values().forEach(future -> future.cancel(true));
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Waits for a future, unwrapping its failure like a direct call would throw it
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for table");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof TimeoutException) {
+                throw new IllegalStateException("Table request timed out", cause);
+            }
+            throw new RuntimeException("Table request failed", cause);
+        }
+    }
+
+    public Duration getDefaultTimeout() { return defaultTimeout; }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Task for one key of a batch
+     */
+    interface TaskFactory<T> {
+        Callable<T> task(String key);
+    }
+
+    private static Optional<ExecutorService> virtualThreadExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static ExecutorService platformExecutor(TableConfigProperties configProperties) {
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, configProperties.getAsyncThreads());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, configProperties.getAsyncQueueCapacity())),
+            runnable -> {
+                Thread thread = new Thread(runnable, "table-async-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        // idle threads go away; the bound only matters under load
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,364 @@
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Inclusive range kernels writing one bit per row into a chunk mask.
+ * Bit i of out corresponds to row start + i; out must be cleared by the kernel.
+ */
+interface RangeKernels {
+    void intRange(int[] values, int start, int length, int lo, int hi, long[] out);
+    void longRange(long[] values, int start, int length, long lo, long hi, long[] out);
+    void doubleRange(double[] values, int start, int length, double lo, double hi, long[] out);
+
+    /**
+     * Vector API kernels when jdk.incubator.vector is on the module path
+     * (--add-modules jdk.incubator.vector), scalar loops otherwise
+     */
+    static RangeKernels load() {
+        try {
+            Class.forName("jdk.incubator.vector.IntVector");
+            return (RangeKernels) Class.forName("VectorRangeKernels").getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            return new ScalarRangeKernels();
+        }
+    }
+}
+
+class ScalarRangeKernels implements RangeKernels {
+
+    public void intRange(int[] values, int start, int length, int lo, int hi, long[] out) {
+        Arrays.fill(out, 0, BatchFilterEvaluator.words(length), 0L);
+        for (int i = 0; i < length; i++) {
+            int v = values[start + i];
+            if (v >= lo && v <= hi) {
+                out[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    public void longRange(long[] values, int start, int length, long lo, long hi, long[] out) {
+        Arrays.fill(out, 0, BatchFilterEvaluator.words(length), 0L);
+        for (int i = 0; i < length; i++) {
+            long v = values[start + i];
+            if (v >= lo && v <= hi) {
+                out[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    public void doubleRange(double[] values, int start, int length, double lo, double hi, long[] out) {
+        Arrays.fill(out, 0, BatchFilterEvaluator.words(length), 0L);
+        for (int i = 0; i < length; i++) {
+            double v = values[start + i];
+            if (v >= lo && v <= hi) {
+                out[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+}
+
+/**
+ * Evaluates a ColumnarFilterPlan over ColumnarTableData in chunks of
+ * CHUNK_SIZE rows. Every node fills a bitmask for the chunk; and/or/not
+ * combine masks word by word, and numeric comparisons (equals, range,
+ * greater-than, less-than) on int/long/double columns run as range kernels
+ * without boxing. Other leaves use ColumnarFilterCompiler row by row.
+ */
+@Service
+class BatchFilterEvaluator {
+    static final int CHUNK_SIZE = 1024;
+    private static final int CHUNK_WORDS = CHUNK_SIZE / 64;
+
+    private final FilterCompiler filterCompiler;
+    private final ColumnarFilterCompiler columnarFilterCompiler;
+    private final RangeKernels kernels = RangeKernels.load();
+
+    public BatchFilterEvaluator(FilterCompiler filterCompiler, ColumnarFilterCompiler columnarFilterCompiler) {
+        this.filterCompiler = filterCompiler;
+        this.columnarFilterCompiler = columnarFilterCompiler;
+    }
+
+    /**
+     * Selection bitmap of the rows matching the plan's filter
+     */
+    public BitSet evaluate(ColumnarFilterPlan plan, ColumnarTableData data) {
+        BatchFilter filter = compile(plan.getFilter(), plan, data);
+        int rowCount = data.getRowCount();
+        long[] selection = new long[words(rowCount)];
+        long[] chunk = new long[CHUNK_WORDS];
+
+        for (int start = 0; start < rowCount; start += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, rowCount - start);
+            filter.evaluate(start, length, chunk);
+            System.arraycopy(chunk, 0, selection, start >>> 6, words(length));
+        }
+        return BitSet.valueOf(selection);
+    }
+
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * Fills out with one bit per row of [start, start + length); bits past
+     * length in the last word must be zero
+     */
+    interface BatchFilter {
+        void evaluate(int start, int length, long[] out);
+    }
+
+    private BatchFilter compile(FilterConfig config, ColumnarFilterPlan plan, ColumnarTableData data) {
+        if (config == null) {
+            return constant(true);
+        }
+
+        String type = config.getType() != null ? config.getType().toLowerCase() : "none";
+
+        switch (type) {
+            case "and":
+                if (config.getConditions() == null || config.getConditions().isEmpty()) {
+                    return constant(true);
+                }
+                return and(compileAll(config.getConditions(), plan, data));
+            case "or":
+                if (config.getConditions() == null || config.getConditions().isEmpty()) {
+                    return constant(false);
+                }
+                return or(compileAll(config.getConditions(), plan, data));
+            case "not":
+                if (config.getConditions() == null || config.getConditions().isEmpty()) {
+                    return constant(true);
+                }
+                return not(compile(config.getConditions().get(0), plan, data));
+            case "custom":
+                return rowByRow(columnarFilterCompiler.compile(config, plan, data));
+            default:
+                return compileLeaf(type, config, plan, data);
+        }
+    }
+
+    private BatchFilter[] compileAll(List<FilterConfig> conditions, ColumnarFilterPlan plan, ColumnarTableData data) {
+        return conditions.stream().map(c -> compile(c, plan, data)).toArray(BatchFilter[]::new);
+    }
+
+    private BatchFilter compileLeaf(String type, FilterConfig config, ColumnarFilterPlan plan, ColumnarTableData data) {
+        ColumnVector vector = data.column(config.getField());
+        boolean nullResult = filterCompiler.compile(config).test(Collections.emptyMap());
+        if (vector == null) {
+            return constant(nullResult);
+        }
+
+        long[] nullWords = vector.getNulls().toLongArray();
+        if ("is-null".equals(type) || "is-not-null".equals(type)) {
+            // non-null rows get the opposite of the null rows' result
+            return withNulls(constant(!nullResult), nullWords, nullResult);
+        }
+
+        BatchFilter values = numericRange(type, config, vector);
+        if (values == null) {
+            return rowByRow(columnarFilterCompiler.compile(config, plan, data));
+        }
+        if ("not-equals".equals(type)) {
+            values = not(values);
+        }
+        return withNulls(values, nullWords, nullResult);
+    }
+
+    /**
+     * Range kernel for a numeric leaf over non-null rows, or null when the
+     * leaf cannot be expressed as one inclusive range
+     */
+    private BatchFilter numericRange(String type, FilterConfig config, ColumnVector vector) {
+        boolean integral = vector instanceof IntColumn || vector instanceof LongColumn;
+        if (!integral && !(vector instanceof DoubleColumn)) {
+            return null;
+        }
+
+        Number lo;
+        Number hi;
+        switch (type) {
+            case "equals":
+            case "not-equals": {
+                // Boxed equals only matches the same wrapper type
+                Object value = config.getValue();
+                boolean sameType = vector instanceof IntColumn ? value instanceof Integer
+                    : vector instanceof LongColumn ? value instanceof Long
+                    : value instanceof Double;
+                if (!sameType) {
+                    return constant(false);
+                }
+                lo = (Number) value;
+                hi = (Number) value;
+                break;
+            }
+            case "range":
+                if (!isNumberOrNull(config.getMinValue()) || !isNumberOrNull(config.getMaxValue())) {
+                    return null;
+                }
+                lo = (Number) config.getMinValue();
+                hi = (Number) config.getMaxValue();
+                break;
+            case "greater-than":
+                if (!(config.getValue() instanceof Number)) return null;
+                lo = integral ? (Number) nextLongAbove((Number) config.getValue())
+                    : (Number) Math.nextUp(((Number) config.getValue()).doubleValue());
+                hi = null;
+                break;
+            case "less-than":
+                if (!(config.getValue() instanceof Number)) return null;
+                lo = null;
+                hi = integral ? (Number) nextLongBelow((Number) config.getValue())
+                    : (Number) Math.nextDown(((Number) config.getValue()).doubleValue());
+                break;
+            default:
+                return null;
+        }
+
+        if (integral && (isInfinite(lo, 1) || isInfinite(hi, -1))) {
+            return constant(false);
+        }
+
+        if (vector instanceof DoubleColumn) {
+            double[] values = ((DoubleColumn) vector).values;
+            double dLo = lo != null ? lo.doubleValue() : Double.NEGATIVE_INFINITY;
+            double dHi = hi != null ? hi.doubleValue() : Double.POSITIVE_INFINITY;
+            return (start, length, out) -> kernels.doubleRange(values, start, length, dLo, dHi, out);
+        }
+
+        long lLo = lo != null ? ceilToLong(lo) : Long.MIN_VALUE;
+        long lHi = hi != null ? floorToLong(hi) : Long.MAX_VALUE;
+        if (vector instanceof IntColumn) {
+            if (lLo > Integer.MAX_VALUE || lHi < Integer.MIN_VALUE || lLo > lHi) {
+                return constant(false);
+            }
+            int[] values = ((IntColumn) vector).values;
+            int iLo = (int) Math.max(lLo, Integer.MIN_VALUE);
+            int iHi = (int) Math.min(lHi, Integer.MAX_VALUE);
+            return (start, length, out) -> kernels.intRange(values, start, length, iLo, iHi, out);
+        }
+        long[] values = ((LongColumn) vector).values;
+        return (start, length, out) -> kernels.longRange(values, start, length, lLo, lHi, out);
+    }
+
+    private static boolean isNumberOrNull(Object value) {
+        return value == null || value instanceof Number;
+    }
+
+    private static boolean isInfinite(Number value, int sign) {
+        return value != null && isFloating(value) && value.doubleValue() == sign * Double.POSITIVE_INFINITY;
+    }
+
+    private static boolean isFloating(Number value) {
+        return value instanceof Double || value instanceof Float;
+    }
+
+    private static long ceilToLong(Number value) {
+        return isFloating(value) ? (long) Math.ceil(value.doubleValue()) : value.longValue();
+    }
+
+    private static long floorToLong(Number value) {
+        return isFloating(value) ? (long) Math.floor(value.doubleValue()) : value.longValue();
+    }
+
+    private static Number nextLongAbove(Number value) {
+        if (isFloating(value)) return (double) (long) Math.floor(value.doubleValue()) + 1;
+        long v = value.longValue();
+        return v == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : (Number) (v + 1);
+    }
+
+    private static Number nextLongBelow(Number value) {
+        if (isFloating(value)) return (double) (long) Math.ceil(value.doubleValue()) - 1;
+        long v = value.longValue();
+        return v == Long.MIN_VALUE ? Double.NEGATIVE_INFINITY : (Number) (v - 1);
+    }
+
+    /**
+     * Replaces the bits of null rows with the leaf's result for a missing value
+     */
+    private static BatchFilter withNulls(BatchFilter values, long[] nullWords, boolean nullResult) {
+        return (start, length, out) -> {
+            values.evaluate(start, length, out);
+            int base = start >>> 6;
+            int words = words(length);
+            for (int w = 0; w < words; w++) {
+                long nulls = base + w < nullWords.length ? nullWords[base + w] : 0L;
+                out[w] = nullResult ? out[w] | nulls : out[w] & ~nulls;
+            }
+            clearTail(out, length);
+        };
+    }
+
+    private static BatchFilter rowByRow(IntPredicate predicate) {
+        return (start, length, out) -> {
+            Arrays.fill(out, 0, words(length), 0L);
+            for (int i = 0; i < length; i++) {
+                if (predicate.test(start + i)) {
+                    out[i >>> 6] |= 1L << i;
+                }
+            }
+        };
+    }
+
+    private static BatchFilter constant(boolean value) {
+        return (start, length, out) -> {
+            Arrays.fill(out, 0, words(length), value ? -1L : 0L);
+            clearTail(out, length);
+        };
+    }
+
+    private static BatchFilter and(BatchFilter[] children) {
+        long[] scratch = new long[CHUNK_WORDS];
+        return (start, length, out) -> {
+            int words = words(length);
+            children[0].evaluate(start, length, out);
+            for (int c = 1; c < children.length; c++) {
+                if (isEmpty(out, words)) {
+                    return;
+                }
+                children[c].evaluate(start, length, scratch);
+                for (int w = 0; w < words; w++) {
+                    out[w] &= scratch[w];
+                }
+            }
+        };
+    }
+
+    private static BatchFilter or(BatchFilter[] children) {
+        long[] scratch = new long[CHUNK_WORDS];
+        return (start, length, out) -> {
+            int words = words(length);
+            children[0].evaluate(start, length, out);
+            for (int c = 1; c < children.length; c++) {
+                children[c].evaluate(start, length, scratch);
+                for (int w = 0; w < words; w++) {
+                    out[w] |= scratch[w];
+                }
+            }
+        };
+    }
+
+    private static BatchFilter not(BatchFilter inner) {
+        return (start, length, out) -> {
+            inner.evaluate(start, length, out);
+            for (int w = 0, words = words(length); w < words; w++) {
+                out[w] = ~out[w];
+            }
+            clearTail(out, length);
+        };
+    }
+
+    private static boolean isEmpty(long[] mask, int words) {
+        for (int w = 0; w < words; w++) {
+            if (mask[w] != 0L) return false;
+        }
+        return true;
+    }
+
+    private static void clearTail(long[] out, int length) {
+        if ((length & 63) != 0) {
+            out[(length - 1) >>> 6] &= -1L >>> (64 - (length & 63));
+        }
+    }
+}
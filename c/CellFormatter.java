@@ -0,0 +1,189 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+
+/**
+ * Display text of one column's cells, compiled once from the column's
+ * declarations (YAML keys of a column):
+ *
+ *   numberFormat   DecimalFormat pattern for Number values, e.g. "#,##0.00"
+ *   dateFormat     DateTimeFormatter pattern for java.time values and Dates
+ *   labels         value (enum name or toString) to display label
+ *   escape         html (default) or none, for columns holding trusted markup
+ *
+ * Each declaration becomes a formatter for its value type, tried in the
+ * order labels, number, date; other values are written as by TableHtmlWriter
+ * (numbers in the locale's number format, anything else with toString()).
+ * The result is escaped and null cells are "". Rows keep their raw values;
+ * only renderers call format().
+ *
+ * Text of immutable values goes through a small direct-mapped cache of
+ * CACHE_SLOTS entries: a value's hash picks its slot and a different value
+ * landing there replaces it. Repeated values (enums, statuses, small
+ * integers) are formatted and escaped once, while high-cardinality columns
+ * just keep the most recent values. Instances are thread-safe; slots hold
+ * immutable entries, so racing writers only overwrite each other.
+ */
+class CellFormatter {
+    public static final String ESCAPE_HTML = "html";
+    public static final String ESCAPE_NONE = "none";
+
+    static final int CACHE_SLOTS = 256;
+
+    private final Text text;
+    private final boolean escapeHtml;
+    private final Entry[] cache = new Entry[CACHE_SLOTS];
+
+    private CellFormatter(Text text, boolean escapeHtml) {
+        this.text = text;
+        this.escapeHtml = escapeHtml;
+    }
+
+    /**
+     * The column's formatter, or null when it declares nothing and keeps the
+     * renderer's default formatting
+     */
+    static CellFormatter compile(String numberFormat, String dateFormat, Map<String, String> labels,
+                                 String escape, Locale locale) {
+        if (numberFormat == null && dateFormat == null && (labels == null || labels.isEmpty()) && escape == null) {
+            return null;
+        }
+        Text text = new NumberText(NumberFormat.getNumberInstance(locale), Object::toString);
+        if (dateFormat != null) {
+            text = new DateText(DateTimeFormatter.ofPattern(dateFormat, locale), text);
+        }
+        if (numberFormat != null) {
+            text = new NumberText(new DecimalFormat(numberFormat, DecimalFormatSymbols.getInstance(locale)), text);
+        }
+        if (labels != null && !labels.isEmpty()) {
+            text = new LabelText(labels, text);
+        }
+        return new CellFormatter(text, escapeHtml(escape));
+    }
+
+    public String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (!cacheable(value)) {
+            return render(value);
+        }
+        int slot = (value.hashCode() * 0x9E3779B9 >>> 24) & (CACHE_SLOTS - 1);
+        Entry entry = cache[slot];
+        if (entry != null && entry.value.equals(value)) {
+            return entry.text;
+        }
+        String rendered = render(value);
+        cache[slot] = new Entry(value, rendered);
+        return rendered;
+    }
+
+    private String render(Object value) {
+        String s = text.apply(value);
+        return escapeHtml ? HtmlTableMarkup.escape(s) : s;
+    }
+
+    /**
+     * Immutable values with value equality; others (e.g. java.util.Date,
+     * AtomicLong) are never cached
+     */
+    private static boolean cacheable(Object value) {
+        return value instanceof String
+            || value instanceof Integer || value instanceof Long || value instanceof Double
+            || value instanceof Short || value instanceof Byte || value instanceof Float
+            || value instanceof BigDecimal || value instanceof BigInteger
+            || value instanceof Boolean
+            || value instanceof Character
+            || value instanceof Enum
+            || value instanceof TemporalAccessor && value.getClass().getName().startsWith("java.time.");
+    }
+
+    private static boolean escapeHtml(String escape) {
+        if (escape == null || ESCAPE_HTML.equalsIgnoreCase(escape)) {
+            return true;
+        }
+        if (ESCAPE_NONE.equalsIgnoreCase(escape)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown escape mode: " + escape + " (expected html or none)");
+    }
+
+    private static final class Entry {
+        final Object value;
+        final String text;
+
+        Entry(Object value, String text) {
+            this.value = value;
+            this.text = text;
+        }
+    }
+
+    private interface Text {
+        String apply(Object value);
+    }
+
+    private static final class LabelText implements Text {
+        private final Map<String, String> labels;
+        private final Text fallback;
+
+        LabelText(Map<String, String> labels, Text fallback) {
+            this.labels = Map.copyOf(labels);
+            this.fallback = fallback;
+        }
+
+        @Override
+        public String apply(Object value) {
+            String label = labels.get(value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+            return label != null ? label : fallback.apply(value);
+        }
+    }
+
+    private static final class NumberText implements Text {
+        // NumberFormat is not thread-safe; one clone per thread
+        private final ThreadLocal<NumberFormat> format;
+        private final Text fallback;
+
+        NumberText(NumberFormat format, Text fallback) {
+            this.format = ThreadLocal.withInitial(() -> (NumberFormat) format.clone());
+            this.fallback = fallback;
+        }
+
+        @Override
+        public String apply(Object value) {
+            return value instanceof Number ? format.get().format(value) : fallback.apply(value);
+        }
+    }
+
+    private static final class DateText implements Text {
+        private final DateTimeFormatter format;
+        private final Text fallback;
+
+        DateText(DateTimeFormatter format, Text fallback) {
+            this.format = format;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public String apply(Object value) {
+            if (value instanceof TemporalAccessor) {
+                return format.format((TemporalAccessor) value);
+            }
+            if (value instanceof java.sql.Time) {
+                return format.format(((java.sql.Time) value).toLocalTime());
+            }
+            if (value instanceof java.sql.Date) {
+                return format.format(((java.sql.Date) value).toLocalDate());
+            }
+            if (value instanceof Date) {
+                return format.format(((Date) value).toInstant().atZone(ZoneId.systemDefault()));
+            }
+            return fallback.apply(value);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Filter prepared for columnar evaluation: the fields it reads and the
+ * custom predicates that must be evaluated on the raw rows while loading
+ */
+class ColumnarFilterPlan {
+    private final FilterConfig filter;
+    private final Set<String> fields;
+    private final Map<FilterConfig, String> derivedFields;
+    private final Map<String, Predicate<Map<String, Object>>> derivedPredicates;
+
+    ColumnarFilterPlan(FilterConfig filter,
+                       Set<String> fields,
+                       Map<FilterConfig, String> derivedFields,
+                       Map<String, Predicate<Map<String, Object>>> derivedPredicates) {
+        this.filter = filter;
+        this.fields = fields;
+        this.derivedFields = derivedFields;
+        this.derivedPredicates = derivedPredicates;
+    }
+
+    public FilterConfig getFilter() { return filter; }
+    public Set<String> getFields() { return fields; }
+    public Map<FilterConfig, String> getDerivedFields() { return derivedFields; }
+    public Map<String, Predicate<Map<String, Object>>> getDerivedPredicates() { return derivedPredicates; }
+
+    /**
+     * Registers the filter's fields and derived columns with a table builder
+     */
+    public ColumnarTableData.Builder prepare(ColumnarTableData.Builder builder) {
+        fields.forEach(field -> builder.addField(field, null));
+        derivedPredicates.forEach(builder::addDerived);
+        return builder;
+    }
+}
+
+/**
+ * Plans FilterConfig trees over ColumnarTableData and compiles the leaves
+ * BatchFilterEvaluator has no kernel for into row predicates.
+ *
+ * Leaf semantics are taken from FilterCompiler: dictionary and boolean columns
+ * evaluate the leaf once per distinct value, numeric columns compare primitives
+ * directly, and null rows use the leaf's result for a missing value. Numeric
+ * range bounds are compared by value, so an int column accepts long bounds.
+ */
+@Service
+class ColumnarFilterCompiler {
+    private final FilterCompiler filterCompiler;
+
+    public ColumnarFilterCompiler(FilterCompiler filterCompiler) {
+        this.filterCompiler = filterCompiler;
+    }
+
+    public ColumnarFilterPlan plan(FilterConfig filter) {
+        Set<String> fields = new LinkedHashSet<>();
+        Map<FilterConfig, String> derivedFields = new IdentityHashMap<>();
+        Map<String, Predicate<Map<String, Object>>> derivedPredicates = new LinkedHashMap<>();
+        collect(filter, fields, derivedFields, derivedPredicates);
+        return new ColumnarFilterPlan(filter, fields, derivedFields, derivedPredicates);
+    }
+
+    private void collect(FilterConfig config,
+                         Set<String> fields,
+                         Map<FilterConfig, String> derivedFields,
+                         Map<String, Predicate<Map<String, Object>>> derivedPredicates) {
+        if (config == null) {
+            return;
+        }
+        if ("custom".equalsIgnoreCase(config.getType())) {
+            String name = "$custom" + derivedFields.size();
+            derivedFields.put(config, name);
+            derivedPredicates.put(name, filterCompiler.compile(config));
+            return;
+        }
+        if (config.getField() != null) {
+            fields.add(config.getField());
+        }
+        if (config.getConditions() != null) {
+            config.getConditions().forEach(c -> collect(c, fields, derivedFields, derivedPredicates));
+        }
+    }
+
+    /**
+     * Row predicate for a single leaf or custom condition; and/or/not are
+     * combined by BatchFilterEvaluator
+     */
+    IntPredicate compile(FilterConfig config, ColumnarFilterPlan plan, ColumnarTableData data) {
+        String type = config.getType() != null ? config.getType().toLowerCase() : "none";
+        if ("custom".equals(type)) {
+            BooleanColumn derived = (BooleanColumn) data.column(plan.getDerivedFields().get(config));
+            return derived::getBoolean;
+        }
+        return compileLeaf(type, config, data);
+    }
+
+    private IntPredicate compileLeaf(String type, FilterConfig config, ColumnarTableData data) {
+        CompiledFilter reference = filterCompiler.compile(config);
+        boolean nullResult = reference.test(Collections.emptyMap());
+        ColumnVector vector = data.column(config.getField());
+
+        if (vector == null) {
+            return row -> nullResult;
+        }
+        BitSet nulls = vector.getNulls();
+
+        if (vector instanceof DictionaryColumn) {
+            DictionaryColumn column = (DictionaryColumn) vector;
+            BitSet matchingCodes = new BitSet(column.getDictionary().size());
+            for (int code = 0; code < column.getDictionary().size(); code++) {
+                if (reference.test(Collections.singletonMap(config.getField(), column.getDictionary().get(code)))) {
+                    matchingCodes.set(code);
+                }
+            }
+            int[] codes = column.codes;
+            return row -> nulls.get(row) ? nullResult : matchingCodes.get(codes[row]);
+        }
+
+        if (vector instanceof BooleanColumn) {
+            BooleanColumn column = (BooleanColumn) vector;
+            boolean whenTrue = reference.test(Collections.singletonMap(config.getField(), Boolean.TRUE));
+            boolean whenFalse = reference.test(Collections.singletonMap(config.getField(), Boolean.FALSE));
+            return row -> nulls.get(row) ? nullResult : (column.getBoolean(row) ? whenTrue : whenFalse);
+        }
+
+        IntPredicate numeric = compileNumeric(type, config, vector);
+        if (numeric != null) {
+            return row -> nulls.get(row) ? nullResult : numeric.test(row);
+        }
+
+        // Everything else reads the boxed value through the reference leaf
+        String field = config.getField();
+        return row -> reference.test(Collections.singletonMap(field, vector.get(row)));
+    }
+
+    /**
+     * Primitive comparison for int/long/double columns, or null when the leaf
+     * type or constants need the boxed path. Only called for non-null rows.
+     */
+    private IntPredicate compileNumeric(String type, FilterConfig config, ColumnVector vector) {
+        if (!(vector instanceof IntColumn || vector instanceof LongColumn || vector instanceof DoubleColumn)) {
+            return null;
+        }
+        NumericAccess access = NumericAccess.of(vector);
+
+        switch (type) {
+            case "equals":
+            case "not-equals": {
+                // Boxed equals only matches the same wrapper type
+                boolean matchesType = access.sameType(config.getValue());
+                IntPredicate equals = matchesType ? access.equalTo((Number) config.getValue()) : row -> false;
+                return "equals".equals(type) ? equals : equals.negate();
+            }
+            case "in":
+            case "not-in": {
+                if (config.getValues() == null) {
+                    return null;
+                }
+                IntPredicate in = access.in(config.getValues());
+                return "in".equals(type) ? in : in.negate();
+            }
+            case "range":
+                if (!isNumberOrNull(config.getMinValue()) || !isNumberOrNull(config.getMaxValue())) {
+                    return null;
+                }
+                return access.between((Number) config.getMinValue(), (Number) config.getMaxValue());
+            case "greater-than":
+                if (!(config.getValue() instanceof Number)) return null;
+                return access.greaterThan((Number) config.getValue());
+            case "less-than":
+                if (!(config.getValue() instanceof Number)) return null;
+                return access.lessThan((Number) config.getValue());
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isNumberOrNull(Object value) {
+        return value == null || value instanceof Number;
+    }
+
+    /**
+     * Typed comparisons over one numeric column
+     */
+    private abstract static class NumericAccess {
+        abstract boolean sameType(Object value);
+        abstract IntPredicate equalTo(Number value);
+        abstract IntPredicate in(List<Object> values);
+        abstract IntPredicate between(Number min, Number max);
+
+        IntPredicate greaterThan(Number value) {
+            return between(value, null).and(equalTo(value).negate());
+        }
+
+        IntPredicate lessThan(Number value) {
+            return between(null, value).and(equalTo(value).negate());
+        }
+
+        static NumericAccess of(ColumnVector vector) {
+            if (vector instanceof DoubleColumn) {
+                return new DoubleAccess(((DoubleColumn) vector).values);
+            }
+            if (vector instanceof IntColumn) {
+                int[] values = ((IntColumn) vector).values;
+                return new LongAccess(row -> values[row], Integer.class);
+            }
+            long[] values = ((LongColumn) vector).values;
+            return new LongAccess(row -> values[row], Long.class);
+        }
+    }
+
+    private interface RowLongReader {
+        long read(int row);
+    }
+
+    private static final class LongAccess extends NumericAccess {
+        private final RowLongReader reader;
+        private final Class<?> boxedType;
+
+        LongAccess(RowLongReader reader, Class<?> boxedType) {
+            this.reader = reader;
+            this.boxedType = boxedType;
+        }
+
+        boolean sameType(Object value) {
+            return boxedType.isInstance(value);
+        }
+
+        IntPredicate equalTo(Number value) {
+            if (value instanceof Double || value instanceof Float) {
+                double d = value.doubleValue();
+                return row -> reader.read(row) == d;
+            }
+            long v = value.longValue();
+            return row -> reader.read(row) == v;
+        }
+
+        IntPredicate in(List<Object> values) {
+            long[] sorted = values.stream()
+                .filter(boxedType::isInstance)
+                .mapToLong(v -> ((Number) v).longValue())
+                .sorted()
+                .toArray();
+            return row -> Arrays.binarySearch(sorted, reader.read(row)) >= 0;
+        }
+
+        IntPredicate between(Number min, Number max) {
+            double dMin = min != null ? min.doubleValue() : Double.NEGATIVE_INFINITY;
+            double dMax = max != null ? max.doubleValue() : Double.POSITIVE_INFINITY;
+            if (isIntegral(min) && isIntegral(max)) {
+                long lMin = min != null ? min.longValue() : Long.MIN_VALUE;
+                long lMax = max != null ? max.longValue() : Long.MAX_VALUE;
+                return row -> {
+                    long v = reader.read(row);
+                    return v >= lMin && v <= lMax;
+                };
+            }
+            return row -> {
+                long v = reader.read(row);
+                return v >= dMin && v <= dMax;
+            };
+        }
+
+        private static boolean isIntegral(Number value) {
+            return value == null || !(value instanceof Double || value instanceof Float);
+        }
+    }
+
+    private static final class DoubleAccess extends NumericAccess {
+        private final double[] values;
+
+        DoubleAccess(double[] values) {
+            this.values = values;
+        }
+
+        boolean sameType(Object value) {
+            return value instanceof Double;
+        }
+
+        IntPredicate equalTo(Number value) {
+            double v = value.doubleValue();
+            return row -> Double.compare(values[row], v) == 0;
+        }
+
+        IntPredicate in(List<Object> values) {
+            double[] sorted = values.stream()
+                .filter(v -> v instanceof Double)
+                .mapToDouble(v -> (Double) v)
+                .sorted()
+                .toArray();
+            return row -> Arrays.binarySearch(sorted, this.values[row]) >= 0;
+        }
+
+        IntPredicate between(Number min, Number max) {
+            double dMin = min != null ? min.doubleValue() : Double.NEGATIVE_INFINITY;
+            double dMax = max != null ? max.doubleValue() : Double.POSITIVE_INFINITY;
+            return row -> Double.compare(values[row], dMin) >= 0 && Double.compare(values[row], dMax) <= 0;
+        }
+    }
+}
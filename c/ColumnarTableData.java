@@ -0,0 +1,355 @@
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * One column of a columnar table. Values are stored in a primitive or
+ * dictionary-encoded array with a separate null bitmap.
+ */
+abstract class ColumnVector {
+    protected final BitSet nulls = new BitSet();
+    protected int size;
+
+    public int size() { return size; }
+    public boolean isNull(int row) { return nulls.get(row); }
+    public BitSet getNulls() { return nulls; }
+
+    /**
+     * Boxed value at row, or null
+     */
+    public abstract Object get(int row);
+
+    abstract boolean accepts(Object value);
+    abstract void ensureCapacity(int capacity);
+    abstract void set(int row, Object value);
+
+    /**
+     * Appends a value, returning false if it does not fit this vector's type
+     */
+    boolean append(Object value) {
+        if (value != null && !accepts(value)) {
+            return false;
+        }
+        if (size == capacity()) {
+            ensureCapacity(Math.max(16, size + (size >> 1)));
+        }
+        if (value == null) {
+            nulls.set(size);
+        } else {
+            set(size, value);
+        }
+        size++;
+        return true;
+    }
+
+    abstract int capacity();
+
+    /**
+     * Empty vector for a declared ColumnConfig type, or null when the type is
+     * left open and should be inferred from the first non-null value
+     */
+    static ColumnVector forType(String type) {
+        if (type == null) {
+            return null;
+        }
+        switch (type.toLowerCase()) {
+            case "int":
+            case "integer":
+                return new IntColumn();
+            case "long":
+                return new LongColumn();
+            case "double":
+                return new DoubleColumn();
+            case "boolean":
+                return new BooleanColumn();
+            case "string":
+                return new DictionaryColumn();
+            default:
+                return new ObjectColumn();
+        }
+    }
+
+    static ColumnVector forValue(Object value) {
+        if (value instanceof Integer) return new IntColumn();
+        if (value instanceof Long) return new LongColumn();
+        if (value instanceof Double) return new DoubleColumn();
+        if (value instanceof Boolean) return new BooleanColumn();
+        if (value instanceof String) return new DictionaryColumn();
+        return new ObjectColumn();
+    }
+
+    /**
+     * Copies a vector into an ObjectColumn after a value of another type arrived
+     */
+    static ColumnVector promote(ColumnVector vector) {
+        ObjectColumn promoted = new ObjectColumn();
+        promoted.ensureCapacity(Math.max(16, vector.size * 2));
+        for (int row = 0; row < vector.size; row++) {
+            promoted.append(vector.get(row));
+        }
+        return promoted;
+    }
+}
+
+class IntColumn extends ColumnVector {
+    int[] values = new int[0];
+
+    public int getInt(int row) { return values[row]; }
+    public Object get(int row) { return isNull(row) ? null : values[row]; }
+    boolean accepts(Object value) { return value instanceof Integer; }
+    int capacity() { return values.length; }
+    void ensureCapacity(int capacity) { values = Arrays.copyOf(values, capacity); }
+    void set(int row, Object value) { values[row] = (Integer) value; }
+}
+
+class LongColumn extends ColumnVector {
+    long[] values = new long[0];
+
+    public long getLong(int row) { return values[row]; }
+    public Object get(int row) { return isNull(row) ? null : values[row]; }
+    boolean accepts(Object value) { return value instanceof Long; }
+    int capacity() { return values.length; }
+    void ensureCapacity(int capacity) { values = Arrays.copyOf(values, capacity); }
+    void set(int row, Object value) { values[row] = (Long) value; }
+}
+
+class DoubleColumn extends ColumnVector {
+    double[] values = new double[0];
+
+    public double getDouble(int row) { return values[row]; }
+    public Object get(int row) { return isNull(row) ? null : values[row]; }
+    boolean accepts(Object value) { return value instanceof Double; }
+    int capacity() { return values.length; }
+    void ensureCapacity(int capacity) { values = Arrays.copyOf(values, capacity); }
+    void set(int row, Object value) { values[row] = (Double) value; }
+}
+
+class BooleanColumn extends ColumnVector {
+    final BitSet values = new BitSet();
+    private int capacity;
+
+    public boolean getBoolean(int row) { return values.get(row); }
+    public Object get(int row) { return isNull(row) ? null : values.get(row); }
+    boolean accepts(Object value) { return value instanceof Boolean; }
+    int capacity() { return capacity; }
+    void ensureCapacity(int capacity) { this.capacity = capacity; }
+    void set(int row, Object value) { values.set(row, (Boolean) value); }
+}
+
+/**
+ * Strings stored as int codes into a dictionary of distinct values
+ */
+class DictionaryColumn extends ColumnVector {
+    int[] codes = new int[0];
+    final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codeOf = new HashMap<>();
+
+    public int getCode(int row) { return codes[row]; }
+    public List<String> getDictionary() { return dictionary; }
+    public Object get(int row) { return isNull(row) ? null : dictionary.get(codes[row]); }
+    boolean accepts(Object value) { return value instanceof String; }
+    int capacity() { return codes.length; }
+    void ensureCapacity(int capacity) { codes = Arrays.copyOf(codes, capacity); }
+
+    void set(int row, Object value) {
+        Integer code = codeOf.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add((String) value);
+            codeOf.put((String) value, code);
+        }
+        codes[row] = code;
+    }
+}
+
+class ObjectColumn extends ColumnVector {
+    Object[] values = new Object[0];
+
+    public Object get(int row) { return values[row]; }
+    boolean accepts(Object value) { return true; }
+    int capacity() { return values.length; }
+    void ensureCapacity(int capacity) { values = Arrays.copyOf(values, capacity); }
+    void set(int row, Object value) { values[row] = value; }
+}
+
+/**
+ * Table data stored column by column with a selection bitmap for filter
+ * results. getRows() is a read-only Map view over the selected rows, so
+ * existing templates keep working without one map per row being stored.
+ */
+class ColumnarTableData extends TableData {
+    private final Map<String, Integer> fieldIndex;
+    private final ColumnVector[] vectors;
+    private final String[] displayFields;
+    private final int rowCount;
+    private final BitSet selection;
+    private int[] selectedRows;
+
+    ColumnarTableData(List<ColumnDefinition> columns,
+                      Map<String, Integer> fieldIndex,
+                      ColumnVector[] vectors,
+                      int rowCount,
+                      BitSet selection) {
+        super(columns, null);
+        this.fieldIndex = fieldIndex;
+        this.vectors = vectors;
+        this.rowCount = rowCount;
+        this.selection = selection;
+        this.displayFields = columns.stream().map(ColumnDefinition::getFieldName).toArray(String[]::new);
+    }
+
+    /**
+     * Column for a field, or null when the field is not part of the schema
+     */
+    public ColumnVector column(String field) {
+        Integer index = fieldIndex.get(field);
+        return index != null ? vectors[index] : null;
+    }
+
+    public int getRowCount() { return rowCount; }
+    public BitSet getSelection() { return selection; }
+
+    /**
+     * Same columns with a different selection
+     */
+    public ColumnarTableData withSelection(BitSet selection) {
+        return new ColumnarTableData(getColumns(), fieldIndex, vectors, rowCount, selection);
+    }
+
+    @Override
+    public List<Map<String, Object>> getRows() {
+        int[] rows = selectedRows();
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                return row(rows[index]);
+            }
+
+            @Override
+            public int size() {
+                return rows.length;
+            }
+        };
+    }
+
+    /**
+     * Map view of one stored row over the display columns; nulls read as ""
+     * like the projected rows of the list-based path
+     */
+    public Map<String, Object> row(int row) {
+        return new AbstractMap<String, Object>() {
+            @Override
+            public Object get(Object key) {
+                Integer index = fieldIndex.get(key);
+                if (index == null) return null;
+                Object value = vectors[index].get(row);
+                return value != null ? value : "";
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                for (String field : displayFields) {
+                    if (field.equals(key)) return true;
+                }
+                return false;
+            }
+
+            @Override
+            public Set<Entry<String, Object>> entrySet() {
+                Map<String, Object> values = new LinkedHashMap<>();
+                for (String field : displayFields) {
+                    values.put(field, get(field));
+                }
+                return values.entrySet();
+            }
+        };
+    }
+
+    private int[] selectedRows() {
+        if (selectedRows == null) {
+            selectedRows = selection.stream().toArray();
+        }
+        return selectedRows;
+    }
+
+    /**
+     * Loads rows into column vectors. Display columns come first, followed by
+     * fields only needed for filtering and derived boolean columns evaluated
+     * on the raw rows (used for custom predicates).
+     */
+    static class Builder {
+        private final List<ColumnDefinition> columns;
+        private final List<String> fields = new ArrayList<>();
+        private final List<ColumnVector> vectors = new ArrayList<>();
+        private final Map<String, Predicate<Map<String, Object>>> derived = new LinkedHashMap<>();
+        private int rowCount;
+
+        Builder(List<ColumnDefinition> columns, List<ColumnConfig> columnConfigs) {
+            this.columns = columns;
+            for (ColumnConfig config : columnConfigs) {
+                addField(config.getFieldName(), config.getType());
+            }
+        }
+
+        Builder addField(String field, String type) {
+            if (!fields.contains(field)) {
+                fields.add(field);
+                vectors.add(ColumnVector.forType(type));
+            }
+            return this;
+        }
+
+        Builder addDerived(String name, Predicate<Map<String, Object>> predicate) {
+            derived.put(name, predicate);
+            return addField(name, "boolean");
+        }
+
+        Builder add(Map<String, Object> record) {
+            for (int i = 0; i < fields.size(); i++) {
+                String field = fields.get(i);
+                Predicate<Map<String, Object>> predicate = derived.get(field);
+                append(i, predicate != null ? (Boolean) predicate.test(record) : record.get(field));
+            }
+            rowCount++;
+            return this;
+        }
+
+        private void append(int index, Object value) {
+            ColumnVector vector = vectors.get(index);
+            if (vector == null) {
+                // Type still open: leading nulls are back-filled once a value arrives
+                if (value == null) {
+                    return;
+                }
+                vector = ColumnVector.forValue(value);
+                for (int row = 0; row < rowCount; row++) {
+                    vector.append(null);
+                }
+                vectors.set(index, vector);
+            }
+            if (!vector.append(value)) {
+                vector = ColumnVector.promote(vector);
+                vector.append(value);
+                vectors.set(index, vector);
+            }
+        }
+
+        ColumnarTableData build() {
+            Map<String, Integer> fieldIndex = new HashMap<>();
+            ColumnVector[] built = new ColumnVector[fields.size()];
+            for (int i = 0; i < built.length; i++) {
+                fieldIndex.put(fields.get(i), i);
+                ColumnVector vector = vectors.get(i);
+                if (vector == null) {
+                    vector = new ObjectColumn();
+                    for (int row = 0; row < rowCount; row++) {
+                        vector.append(null);
+                    }
+                }
+                built[i] = vector;
+            }
+            BitSet all = new BitSet(rowCount);
+            all.set(0, rowCount);
+            return new ColumnarTableData(columns, fieldIndex, built, rowCount, all);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Data source that can report what changed since a version it handed out
+ * earlier. changesSince(null) returns every row with reset set, which is
+ * how a materialized table is first loaded.
+ */
+interface DeltaDataSourceService extends DataSourceService {
+    TableDelta changesSince(Object version);
+}
+
+/**
+ * Rows inserted or updated and primary keys deleted since the requested
+ * version. With reset set, upserted is the complete table and replaces
+ * whatever the caller had.
+ */
+class TableDelta {
+    private final Object version;
+    private final List<Map<String, Object>> upserted;
+    private final List<Object> deleted;
+    private final boolean reset;
+
+    public TableDelta(Object version, List<Map<String, Object>> upserted, List<Object> deleted, boolean reset) {
+        this.version = version;
+        this.upserted = upserted != null ? upserted : Collections.emptyList();
+        this.deleted = deleted != null ? deleted : Collections.emptyList();
+        this.reset = reset;
+    }
+
+    public static TableDelta full(Object version, List<Map<String, Object>> rows) {
+        return new TableDelta(version, rows, null, true);
+    }
+
+    public Object getVersion() { return version; }
+    public List<Map<String, Object>> getUpserted() { return upserted; }
+    public List<Object> getDeleted() { return deleted; }
+    public boolean isReset() { return reset; }
+}
+
+/**
+ * Effect of one refresh on the materialized result: projected rows that were
+ * added or changed and keys of rows that left it. reset means the whole
+ * result was replaced and clients should re-render the table.
+ */
+class TableChanges {
+    private final List<ColumnDefinition> columns;
+    private final String primaryKey;
+    private final Map<Object, Map<String, Object>> upserted;
+    private final Set<Object> removed;
+    private final boolean reset;
+
+    TableChanges(List<ColumnDefinition> columns, String primaryKey,
+                 Map<Object, Map<String, Object>> upserted, Set<Object> removed, boolean reset) {
+        this.columns = columns;
+        this.primaryKey = primaryKey;
+        this.upserted = upserted;
+        this.removed = removed;
+        this.reset = reset;
+    }
+
+    public Map<Object, Map<String, Object>> getUpserted() { return upserted; }
+    public Set<Object> getRemoved() { return removed; }
+    public boolean isReset() { return reset; }
+
+    public boolean isEmpty() {
+        return !reset && upserted.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * One <tr> per upserted row, keyed by primary key, in the cell markup of
+     * table.ftl plus a data-key attribute clients use to replace or remove rows
+     */
+    public Map<Object, String> toRowFragments() {
+        Map<Object, String> fragments = new LinkedHashMap<>();
+        upserted.forEach((key, row) -> {
+            StringBuilder sb = new StringBuilder("      <tr data-key=\"");
+            HtmlTableMarkup.escape(String.valueOf(key), sb);
+            sb.append("\">\n");
+            HtmlTableMarkup.appendCells(row, columns, sb);
+            sb.append("      </tr>\n");
+            fragments.put(key, sb.toString());
+        });
+        return fragments;
+    }
+
+    public String getPrimaryKey() { return primaryKey; }
+}
+
+/**
+ * Filtered and projected result of one config, kept up to date from deltas.
+ * Only changed rows are filtered and projected, so a refresh costs in
+ * proportion to the delta. The TableData snapshot is built lazily, on the
+ * first read after a change, so deltas applied through refreshChanges()
+ * never copy the table.
+ *
+ * read() does not queue behind a running refresh: while another thread
+ * holds the refresh lock it returns the last published snapshot. With
+ * aggregations, the aggregated fields of each materialized row are kept
+ * and the aggregates are recomputed from them when a snapshot is built.
+ */
+class MaterializedTable {
+    private final TablePlan plan;
+    private final String primaryKey;
+    private final Set<String> aggregatedFields;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Object, Map<String, Object>> rows = new LinkedHashMap<>();
+    private final Map<Object, Map<String, Object>> aggregated = new HashMap<>();
+    private Object version;
+    private boolean stale = true;
+    private volatile TableData snapshot;
+
+    MaterializedTable(TablePlan plan) {
+        this.plan = plan;
+        this.primaryKey = plan.getConfig().getPrimaryKey();
+        Aggregator aggregator = plan.newAggregator();
+        this.aggregatedFields = aggregator != null ? aggregator.getFields() : null;
+    }
+
+    public TablePlan getPlan() { return plan; }
+
+    /**
+     * The result after applying pending changes, or the last published one
+     * while another thread is refreshing
+     */
+    public TableData read() {
+        TableData current = snapshot;
+        if (current == null) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            return current;
+        }
+        try {
+            apply(plan.getDeltaSource().changesSince(version));
+            return snapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies pending changes and returns them; the snapshot is left to the next read
+     */
+    public TableChanges refreshChanges() {
+        lock.lock();
+        try {
+            return apply(plan.getDeltaSource().changesSince(version));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TableChanges apply(TableDelta delta) {
+        Predicate<Map<String, Object>> filter = plan.getRowPlan().getFilter();
+        Function<Map<String, Object>, Map<String, Object>> projector = plan.getRowPlan().getProjector();
+
+        Map<Object, Map<String, Object>> upserted = new LinkedHashMap<>();
+        Set<Object> removed = new LinkedHashSet<>();
+        if (delta.isReset()) {
+            rows.clear();
+            aggregated.clear();
+        }
+        for (Object key : delta.getDeleted()) {
+            if (remove(key)) {
+                removed.add(key);
+            }
+        }
+        for (Map<String, Object> row : delta.getUpserted()) {
+            Object key = row.get(primaryKey);
+            if (key == null) {
+                throw new IllegalStateException("Row without primary key " + primaryKey +
+                    " in delta for table " + plan.getConfigName());
+            }
+            if (filter.test(row)) {
+                Map<String, Object> projected = projector.apply(row);
+                rows.put(key, projected);
+                if (aggregatedFields != null) {
+                    aggregated.put(key, aggregatedValues(row));
+                }
+                upserted.put(key, projected);
+                removed.remove(key);
+            } else if (remove(key)) {
+                upserted.remove(key);
+                removed.add(key);
+            }
+        }
+        version = delta.getVersion();
+
+        if (delta.isReset() || !upserted.isEmpty() || !removed.isEmpty()) {
+            stale = true;
+        }
+        return new TableChanges(plan.getColumns(), primaryKey, upserted, removed, delta.isReset());
+    }
+
+    private boolean remove(Object key) {
+        aggregated.remove(key);
+        return rows.remove(key) != null;
+    }
+
+    private Map<String, Object> aggregatedValues(Map<String, Object> row) {
+        Map<String, Object> values = new HashMap<>(aggregatedFields.size() * 4 / 3 + 1);
+        for (String field : aggregatedFields) {
+            values.put(field, row.get(field));
+        }
+        return values;
+    }
+
+    /**
+     * Current snapshot, rebuilt if rows changed since it was published; call with the lock held
+     */
+    private TableData snapshot() {
+        if (stale) {
+            TableData data = new TableData(plan.getColumns(), Collections.unmodifiableList(new ArrayList<>(rows.values())));
+            Aggregator aggregator = plan.newAggregator();
+            if (aggregator != null) {
+                // in row order, so group subtotals come out as from a full pass
+                rows.keySet().forEach(key -> aggregator.accept(aggregated.get(key)));
+                data.setAggregates(aggregator.result());
+            }
+            snapshot = data;
+            stale = false;
+        }
+        return snapshot;
+    }
+}
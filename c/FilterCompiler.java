@@ -0,0 +1,662 @@
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Compiled filter node; evaluates a row without allocating
+ */
+abstract class CompiledFilter implements Predicate<Map<String, Object>> {
+
+    /**
+     * Relative evaluation cost, used to order conjuncts and disjuncts
+     */
+    abstract int cost();
+
+    static final CompiledFilter ALWAYS = new CompiledFilter() {
+        public boolean test(Map<String, Object> record) { return true; }
+        int cost() { return 0; }
+    };
+
+    static final CompiledFilter NEVER = new CompiledFilter() {
+        public boolean test(Map<String, Object> record) { return false; }
+        int cost() { return 0; }
+    };
+}
+
+/**
+ * Compiles a FilterConfig tree once into a flat CompiledFilter.
+ *
+ * Compared to FilterBuilder, constants are normalized up front (string forms,
+ * hash sets for in/not-in), and/or nodes are flattened and evaluated with
+ * plain loops, and children are ordered cheapest first. With adaptiveFilters
+ * on (off by default), and/or nodes then re-order their children from sampled
+ * runtime cost and selectivity (see AdaptiveFilterOrder); children that can
+ * throw are pinned there, as they are in the static order.
+ */
+@Service
+class FilterCompiler {
+    private static final int COST_NULL_CHECK = 1;
+    private static final int COST_EQUALS = 2;
+    private static final int COST_COMPARE = 3;
+    private static final int COST_STRING_MATCH = 5;
+    private static final int COST_CUSTOM = 20;
+
+    private final FilterBuilder filterBuilder;
+    private final TableConfigProperties configProperties;
+    // one runtime order per and/or node, shared by every filter compiled from it
+    private final Map<FilterConfig, AdaptiveFilterOrder> adaptiveOrders =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    public FilterCompiler(FilterBuilder filterBuilder, TableConfigProperties configProperties) {
+        this.filterBuilder = filterBuilder;
+        this.configProperties = configProperties;
+    }
+
+    public CompiledFilter compile(FilterConfig config) {
+        return compile(config, false);
+    }
+
+    /**
+     * Variant for filters shared across worker threads: every call asks the
+     * custom beans for their predicate again, and custom predicates are
+     * evaluated holding a ReentrantLock kept per predicate instance (in a
+     * static weak map, so every filter handed the same instance shares its
+     * lock). Beans that return a fresh predicate per call keep the lock
+     * uncontended; beans that return one shared instance are serialized
+     * instead of raced.
+     */
+    public CompiledFilter compileForThread(FilterConfig config) {
+        return compile(config, true);
+    }
+
+    /**
+     * Whether the tree contains a custom filter anywhere
+     */
+    public static boolean hasCustom(FilterConfig config) {
+        if (config == null) {
+            return false;
+        }
+        if ("custom".equalsIgnoreCase(config.getType())) {
+            return true;
+        }
+        return config.getConditions() != null
+            && config.getConditions().stream().anyMatch(FilterCompiler::hasCustom);
+    }
+
+    /**
+     * Order and statistics of every adaptive and/or node in a compiled filter,
+     * depth first; empty for filters that are not compiled or not adaptive
+     */
+    public static List<JunctionStatistics> statistics(Predicate<Map<String, Object>> filter) {
+        List<JunctionStatistics> statistics = new ArrayList<>();
+        collectStatistics(filter, statistics);
+        return statistics;
+    }
+
+    private static void collectStatistics(Predicate<Map<String, Object>> filter, List<JunctionStatistics> out) {
+        CompiledFilter[] children = null;
+        AdaptiveFilterOrder adaptive = null;
+        if (filter instanceof AndFilter) {
+            children = ((AndFilter) filter).children;
+            adaptive = ((AndFilter) filter).adaptive;
+        } else if (filter instanceof OrFilter) {
+            children = ((OrFilter) filter).children;
+            adaptive = ((OrFilter) filter).adaptive;
+        } else if (filter instanceof NotFilter) {
+            collectStatistics(((NotFilter) filter).inner, out);
+        }
+        if (adaptive != null) {
+            out.add(adaptive.statistics());
+        }
+        if (children != null) {
+            for (CompiledFilter child : children) {
+                collectStatistics(child, out);
+            }
+        }
+    }
+
+    private CompiledFilter compile(FilterConfig config, boolean lockCustom) {
+        if (config == null) {
+            return CompiledFilter.ALWAYS;
+        }
+
+        String type = config.getType() != null ? config.getType().toLowerCase() : "none";
+
+        switch (type) {
+            case "equals":
+                return compileEquals(config);
+            case "not-equals":
+                return not(compileEquals(config));
+            case "range":
+                return new RangeFilter(config.getField(), config.getMinValue(), config.getMaxValue());
+            case "in":
+                return compileIn(config);
+            case "not-in":
+                return not(compileIn(config));
+            case "contains":
+            case "starts-with":
+            case "ends-with":
+                return compileStringMatch(type, config);
+            case "is-null":
+                return new NullFilter(config.getField(), true);
+            case "is-not-null":
+                return new NullFilter(config.getField(), false);
+            case "greater-than":
+                return config.getValue() == null ? CompiledFilter.NEVER
+                    : new CompareFilter(config.getField(), config.getValue(), true);
+            case "less-than":
+                return config.getValue() == null ? CompiledFilter.NEVER
+                    : new CompareFilter(config.getField(), config.getValue(), false);
+            case "and":
+                return compileAnd(config, lockCustom);
+            case "or":
+                return compileOr(config, lockCustom);
+            case "not":
+                if (config.getConditions() == null || config.getConditions().isEmpty()) {
+                    return CompiledFilter.ALWAYS;
+                }
+                return not(compile(config.getConditions().get(0), lockCustom));
+            case "custom":
+                return new CustomFilter(filterBuilder.buildCustomPredicate(config), lockCustom);
+            default:
+                return CompiledFilter.ALWAYS;
+        }
+    }
+
+    private CompiledFilter compileEquals(FilterConfig config) {
+        if (isCaseInsensitive(config) && config.getValue() != null) {
+            return new EqualsIgnoreCaseFilter(config.getField(), config.getValue());
+        }
+        return new EqualsFilter(config.getField(), config.getValue());
+    }
+
+    private CompiledFilter compileIn(FilterConfig config) {
+        if (config.getValues() == null) {
+            return CompiledFilter.NEVER;
+        }
+        Set<Object> values = new HashSet<>(config.getValues());
+        Set<String> caseInsensitiveValues = null;
+        if (isCaseInsensitive(config)) {
+            // lower-cased keys, so a row costs one toLowerCase and a hash lookup
+            caseInsensitiveValues = new HashSet<>();
+            for (Object v : config.getValues()) {
+                if (v != null) {
+                    caseInsensitiveValues.add(v.toString().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return new InFilter(config.getField(), values, caseInsensitiveValues);
+    }
+
+    private CompiledFilter compileStringMatch(String type, FilterConfig config) {
+        if (config.getValue() == null) {
+            return CompiledFilter.NEVER;
+        }
+        int mode = "contains".equals(type) ? StringMatchFilter.CONTAINS
+            : "starts-with".equals(type) ? StringMatchFilter.STARTS_WITH
+            : StringMatchFilter.ENDS_WITH;
+        return new StringMatchFilter(config.getField(), config.getValue().toString(), mode, isCaseInsensitive(config));
+    }
+
+    private CompiledFilter compileAnd(FilterConfig config, boolean lockCustom) {
+        if (config.getConditions() == null || config.getConditions().isEmpty()) {
+            return CompiledFilter.ALWAYS;
+        }
+
+        List<Labeled> children = new ArrayList<>();
+        for (FilterConfig condition : config.getConditions()) {
+            CompiledFilter child = compile(condition, lockCustom);
+            if (child == CompiledFilter.NEVER) {
+                return CompiledFilter.NEVER;
+            }
+            if (child instanceof AndFilter) {
+                AndFilter and = (AndFilter) child;
+                for (int i = 0; i < and.children.length; i++) {
+                    children.add(new Labeled(and.children[i], and.labels[i]));
+                }
+            } else if (child != CompiledFilter.ALWAYS) {
+                children.add(new Labeled(child, label(condition)));
+            }
+        }
+        if (children.isEmpty()) {
+            return CompiledFilter.ALWAYS;
+        }
+        if (children.size() == 1) {
+            return children.get(0).filter;
+        }
+        children = byCost(children);
+        CompiledFilter[] filters = Labeled.filters(children);
+        String[] labels = Labeled.labels(children);
+        return new AndFilter(filters, labels, adaptive(config, filters, labels, true));
+    }
+
+    private CompiledFilter compileOr(FilterConfig config, boolean lockCustom) {
+        if (config.getConditions() == null || config.getConditions().isEmpty()) {
+            return CompiledFilter.NEVER;
+        }
+
+        List<Labeled> children = new ArrayList<>();
+        for (FilterConfig condition : config.getConditions()) {
+            CompiledFilter child = compile(condition, lockCustom);
+            if (child == CompiledFilter.ALWAYS) {
+                return CompiledFilter.ALWAYS;
+            }
+            if (child instanceof OrFilter) {
+                OrFilter or = (OrFilter) child;
+                for (int i = 0; i < or.children.length; i++) {
+                    children.add(new Labeled(or.children[i], or.labels[i]));
+                }
+            } else if (child != CompiledFilter.NEVER) {
+                children.add(new Labeled(child, label(condition)));
+            }
+        }
+        if (children.isEmpty()) {
+            return CompiledFilter.NEVER;
+        }
+        if (children.size() == 1) {
+            return children.get(0).filter;
+        }
+        children = byCost(children);
+        CompiledFilter[] filters = Labeled.filters(children);
+        String[] labels = Labeled.labels(children);
+        return new OrFilter(filters, labels, adaptive(config, filters, labels, false));
+    }
+
+    /**
+     * Children cheapest first, except that a child that can throw (see mayThrow)
+     * stays behind every child declared before it: those may be the guards that
+     * keep it from seeing values it cannot compare. Children between two such
+     * children are sorted among themselves.
+     */
+    private static List<Labeled> byCost(List<Labeled> children) {
+        List<Labeled> ordered = new ArrayList<>(children.size());
+        List<Labeled> segment = new ArrayList<>();
+        for (Labeled child : children) {
+            if (mayThrow(child.filter)) {
+                segment.sort(Comparator.comparingInt(c -> c.filter.cost()));
+                ordered.addAll(segment);
+                ordered.add(child);
+                segment.clear();
+            } else {
+                segment.add(child);
+            }
+        }
+        segment.sort(Comparator.comparingInt(c -> c.filter.cost()));
+        ordered.addAll(segment);
+        return ordered;
+    }
+
+    /**
+     * Whether the filter can throw for some row: compare and range raise
+     * ClassCastException on values of another type, custom predicates may throw anything
+     */
+    static boolean mayThrow(CompiledFilter filter) {
+        if (filter instanceof CompareFilter || filter instanceof RangeFilter || filter instanceof CustomFilter) {
+            return true;
+        }
+        if (filter instanceof NotFilter) {
+            return mayThrow(((NotFilter) filter).inner);
+        }
+        CompiledFilter[] children = filter instanceof AndFilter ? ((AndFilter) filter).children
+            : filter instanceof OrFilter ? ((OrFilter) filter).children
+            : null;
+        return children != null && Arrays.stream(children).anyMatch(FilterCompiler::mayThrow);
+    }
+
+    private AdaptiveFilterOrder adaptive(FilterConfig config, CompiledFilter[] children, String[] labels,
+                                         boolean conjunction) {
+        if (!configProperties.isAdaptiveFilters()) {
+            return null;
+        }
+        synchronized (adaptiveOrders) {
+            AdaptiveFilterOrder order = adaptiveOrders.get(config);
+            if (order == null || order.size() != children.length) {
+                boolean[] pinned = new boolean[children.length];
+                for (int i = 0; i < children.length; i++) {
+                    pinned[i] = mayThrow(children[i]);
+                }
+                order = new AdaptiveFilterOrder(labels, pinned, conjunction,
+                    configProperties.getFilterSampleRate(), configProperties.getFilterReorderSamples());
+                adaptiveOrders.put(config, order);
+            }
+            return order;
+        }
+    }
+
+    private static String label(FilterConfig config) {
+        String type = config.getType() != null ? config.getType().toLowerCase() : "none";
+        if (config.getField() != null) {
+            return type + " " + config.getField();
+        }
+        if (config.getCustomBean() != null) {
+            return type + " " + config.getCustomBean() + "." + config.getCustomMethod();
+        }
+        return type;
+    }
+
+    /**
+     * Child filter with the condition it came from, kept together while sorting
+     */
+    private static final class Labeled {
+        final CompiledFilter filter;
+        final String label;
+
+        Labeled(CompiledFilter filter, String label) {
+            this.filter = filter;
+            this.label = label;
+        }
+
+        static CompiledFilter[] filters(List<Labeled> children) {
+            return children.stream().map(child -> child.filter).toArray(CompiledFilter[]::new);
+        }
+
+        static String[] labels(List<Labeled> children) {
+            return children.stream().map(child -> child.label).toArray(String[]::new);
+        }
+    }
+
+    private static CompiledFilter not(CompiledFilter inner) {
+        if (inner == CompiledFilter.ALWAYS) return CompiledFilter.NEVER;
+        if (inner == CompiledFilter.NEVER) return CompiledFilter.ALWAYS;
+        if (inner instanceof NotFilter) return ((NotFilter) inner).inner;
+        return new NotFilter(inner);
+    }
+
+    private boolean isCaseInsensitive(FilterConfig config) {
+        return config.getCaseInsensitive() != null && config.getCaseInsensitive();
+    }
+
+    static final class EqualsFilter extends CompiledFilter {
+        private final String field;
+        private final Object value;
+
+        EqualsFilter(String field, Object value) {
+            this.field = field;
+            this.value = value;
+        }
+
+        public boolean test(Map<String, Object> record) {
+            Object fieldValue = record.get(field);
+            if (fieldValue == null) return value == null;
+            return fieldValue.equals(value);
+        }
+
+        int cost() { return COST_EQUALS; }
+    }
+
+    static final class EqualsIgnoreCaseFilter extends CompiledFilter {
+        private final String field;
+        private final Object value;
+        private final String stringValue;
+
+        EqualsIgnoreCaseFilter(String field, Object value) {
+            this.field = field;
+            this.value = value;
+            this.stringValue = value.toString();
+        }
+
+        public boolean test(Map<String, Object> record) {
+            Object fieldValue = record.get(field);
+            if (fieldValue == null) return false;
+            if (fieldValue instanceof String) {
+                return ((String) fieldValue).equalsIgnoreCase(stringValue);
+            }
+            return fieldValue.equals(value);
+        }
+
+        int cost() { return COST_EQUALS; }
+    }
+
+    static final class InFilter extends CompiledFilter {
+        private final String field;
+        private final Set<Object> values;
+        private final Set<String> caseInsensitiveValues;
+
+        InFilter(String field, Set<Object> values, Set<String> caseInsensitiveValues) {
+            this.field = field;
+            this.values = values;
+            this.caseInsensitiveValues = caseInsensitiveValues;
+        }
+
+        public boolean test(Map<String, Object> record) {
+            Object fieldValue = record.get(field);
+            if (caseInsensitiveValues != null && fieldValue instanceof String) {
+                return caseInsensitiveValues.contains(((String) fieldValue).toLowerCase(Locale.ROOT));
+            }
+            return values.contains(fieldValue);
+        }
+
+        int cost() { return COST_COMPARE; }
+    }
+
+    static final class RangeFilter extends CompiledFilter {
+        private final String field;
+        private final Object minValue;
+        private final Object maxValue;
+
+        RangeFilter(String field, Object minValue, Object maxValue) {
+            this.field = field;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean test(Map<String, Object> record) {
+            Object fieldValue = record.get(field);
+            if (!(fieldValue instanceof Comparable)) return false;
+            Comparable<Object> comp = (Comparable<Object>) fieldValue;
+            return (minValue == null || comp.compareTo(minValue) >= 0)
+                && (maxValue == null || comp.compareTo(maxValue) <= 0);
+        }
+
+        int cost() { return COST_COMPARE; }
+    }
+
+    static final class CompareFilter extends CompiledFilter {
+        private final String field;
+        private final Object value;
+        private final boolean greaterThan;
+
+        CompareFilter(String field, Object value, boolean greaterThan) {
+            this.field = field;
+            this.value = value;
+            this.greaterThan = greaterThan;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean test(Map<String, Object> record) {
+            Object fieldValue = record.get(field);
+            if (!(fieldValue instanceof Comparable)) return false;
+            int result = ((Comparable<Object>) fieldValue).compareTo(value);
+            return greaterThan ? result > 0 : result < 0;
+        }
+
+        int cost() { return COST_COMPARE; }
+    }
+
+    static final class NullFilter extends CompiledFilter {
+        private final String field;
+        private final boolean isNull;
+
+        NullFilter(String field, boolean isNull) {
+            this.field = field;
+            this.isNull = isNull;
+        }
+
+        public boolean test(Map<String, Object> record) {
+            return (record.get(field) == null) == isNull;
+        }
+
+        int cost() { return COST_NULL_CHECK; }
+    }
+
+    /**
+     * contains / starts-with / ends-with; case-insensitive matching uses
+     * regionMatches so neither side is lower-cased per row
+     */
+    static final class StringMatchFilter extends CompiledFilter {
+        static final int CONTAINS = 0;
+        static final int STARTS_WITH = 1;
+        static final int ENDS_WITH = 2;
+
+        private final String field;
+        private final String search;
+        private final int mode;
+        private final boolean ignoreCase;
+
+        StringMatchFilter(String field, String search, int mode, boolean ignoreCase) {
+            this.field = field;
+            this.search = search;
+            this.mode = mode;
+            this.ignoreCase = ignoreCase;
+        }
+
+        public boolean test(Map<String, Object> record) {
+            Object fieldValue = record.get(field);
+            if (fieldValue == null) return false;
+            String str = fieldValue instanceof String ? (String) fieldValue : fieldValue.toString();
+
+            if (!ignoreCase) {
+                switch (mode) {
+                    case STARTS_WITH: return str.startsWith(search);
+                    case ENDS_WITH: return str.endsWith(search);
+                    default: return str.contains(search);
+                }
+            }
+
+            int length = search.length();
+            switch (mode) {
+                case STARTS_WITH:
+                    return str.regionMatches(true, 0, search, 0, length);
+                case ENDS_WITH:
+                    return str.length() >= length
+                        && str.regionMatches(true, str.length() - length, search, 0, length);
+                default:
+                    for (int i = 0, last = str.length() - length; i <= last; i++) {
+                        if (str.regionMatches(true, i, search, 0, length)) {
+                            return true;
+                        }
+                    }
+                    return false;
+            }
+        }
+
+        int cost() { return COST_STRING_MATCH; }
+    }
+
+    static final class AndFilter extends CompiledFilter {
+        final CompiledFilter[] children;
+        final String[] labels;
+        final AdaptiveFilterOrder adaptive;
+        private final int cost;
+
+        AndFilter(CompiledFilter[] children, String[] labels, AdaptiveFilterOrder adaptive) {
+            this.children = children;
+            this.labels = labels;
+            this.adaptive = adaptive;
+            this.cost = Arrays.stream(children).mapToInt(CompiledFilter::cost).sum();
+        }
+
+        public boolean test(Map<String, Object> record) {
+            if (adaptive != null) {
+                if (adaptive.sample()) {
+                    return adaptive.evaluate(children, record);
+                }
+                for (int i : adaptive.order()) {
+                    if (!children[i].test(record)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (CompiledFilter child : children) {
+                if (!child.test(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int cost() { return cost; }
+    }
+
+    static final class OrFilter extends CompiledFilter {
+        final CompiledFilter[] children;
+        final String[] labels;
+        final AdaptiveFilterOrder adaptive;
+        private final int cost;
+
+        OrFilter(CompiledFilter[] children, String[] labels, AdaptiveFilterOrder adaptive) {
+            this.children = children;
+            this.labels = labels;
+            this.adaptive = adaptive;
+            this.cost = Arrays.stream(children).mapToInt(CompiledFilter::cost).sum();
+        }
+
+        public boolean test(Map<String, Object> record) {
+            if (adaptive != null) {
+                if (adaptive.sample()) {
+                    return adaptive.evaluate(children, record);
+                }
+                for (int i : adaptive.order()) {
+                    if (children[i].test(record)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (CompiledFilter child : children) {
+                if (child.test(record)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int cost() { return cost; }
+    }
+
+    static final class NotFilter extends CompiledFilter {
+        final CompiledFilter inner;
+
+        NotFilter(CompiledFilter inner) {
+            this.inner = inner;
+        }
+
+        public boolean test(Map<String, Object> record) {
+            return !inner.test(record);
+        }
+
+        int cost() { return inner.cost(); }
+    }
+
+    static final class CustomFilter extends CompiledFilter {
+        // one lock per predicate instance, a bean method may hand the same one to several filters
+        private static final Map<Object, ReentrantLock> LOCKS = Collections.synchronizedMap(new WeakHashMap<>());
+
+        private final Predicate<Map<String, Object>> predicate;
+        // null when the predicate may be called concurrently
+        private final ReentrantLock lock;
+
+        CustomFilter(Predicate<Map<String, Object>> predicate, boolean locked) {
+            this.predicate = predicate;
+            this.lock = locked ? LOCKS.computeIfAbsent(predicate, p -> new ReentrantLock()) : null;
+        }
+
+        public boolean test(Map<String, Object> record) {
+            if (lock == null) {
+                return predicate.test(record);
+            }
+            lock.lock();
+            try {
+                return predicate.test(record);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int cost() { return COST_CUSTOM; }
+    }
+}
@@ -0,0 +1,532 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * Read-only rows kept outside the Java heap, in a memory-mapped temp file.
+ *
+ * Rows are stored in a compact binary form: field names once per store,
+ * then per row the field count and per field its name index, a type tag
+ * and the value. Strings, ints, longs, doubles, booleans, BigDecimals and
+ * LocalDates have their own encoding; other values are Java-serialized.
+ * get() decodes a row on each call into a fresh LinkedHashMap with the
+ * fields in their original order, so only the offsets (8 bytes per row)
+ * live on the heap and decoded rows die young.
+ *
+ * The file is deleted as soon as it is mapped; the mapping, and with it
+ * the memory, is released when the list becomes unreachable. collect()
+ * also deletes the files of a collection that fails part way.
+ *
+ * Rows holding a value that is neither one of the types above nor
+ * Serializable cannot be stored; from the first such row on, the rows
+ * stay on the heap.
+ *
+ * RowEncoder and decode() are also used on their own, e.g. by RowSorter
+ * for its spilled runs.
+ */
+final class OffHeapRows extends AbstractList<Map<String, Object>> implements RandomAccess {
+    // rows never span two mappings, so a mapping stays below the 2 GB ByteBuffer limit
+    private static final long MAX_SEGMENT = Integer.MAX_VALUE - 8;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte DECIMAL = 7;
+    private static final byte DATE = 8;
+    private static final byte SERIALIZED = 9;
+
+    private final String[] fields;
+    private final long[] offsets;
+    private final long[] segmentStarts;
+    private final MappedByteBuffer[] segments;
+
+    private OffHeapRows(String[] fields, long[] offsets, long[] segmentStarts, MappedByteBuffer[] segments) {
+        this.fields = fields;
+        this.offsets = offsets;
+        this.segmentStarts = segmentStarts;
+        this.segments = segments;
+    }
+
+    /**
+     * Collects rows on the heap and moves them off heap once there are more
+     * than thresholdRows; smaller results stay a plain ArrayList. Temp files
+     * are deleted when the stream fails before the result is complete.
+     */
+    static List<Map<String, Object>> collect(Stream<Map<String, Object>> rows, int thresholdRows) {
+        Queue<Writer> writers = new ConcurrentLinkedQueue<>();
+        try {
+            return rows.collect(Collector.of(
+                () -> {
+                    Writer writer = new Writer(thresholdRows);
+                    writers.add(writer);
+                    return writer;
+                },
+                Writer::add,
+                Writer::combine,
+                Writer::finish));
+        } finally {
+            // no-op for finished writers, their files are gone once mapped
+            writers.forEach(Writer::delete);
+        }
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        long offset = offsets[index];
+        int segment = segment(offset);
+        return decode(segments[segment], (int) (offset - segmentStarts[segment]), fields);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Bytes used off heap
+     */
+    public long getStoredBytes() {
+        return offsets[offsets.length - 1];
+    }
+
+    private int segment(long offset) {
+        int i = Arrays.binarySearch(segmentStarts, offset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * Row encoded at position by a RowEncoder whose field names are fields
+     */
+    static Map<String, Object> decode(ByteBuffer buffer, int position, String[] fields) {
+        Cursor in = new Cursor(buffer, position);
+        int fieldCount = in.readVarInt();
+        Map<String, Object> row = new LinkedHashMap<>(fieldCount * 4 / 3 + 1);
+        for (int i = 0; i < fieldCount; i++) {
+            String field = fields[in.readVarInt()];
+            row.put(field, in.readValue());
+        }
+        return row;
+    }
+
+    /**
+     * Absolute reads only, so concurrent readers can share the mapped buffers
+     */
+    private static final class Cursor {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Cursor(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        long readLong() {
+            long value = buffer.getLong(position);
+            position += Long.BYTES;
+            return value;
+        }
+
+        byte[] readBytes() {
+            byte[] bytes = new byte[readVarInt()];
+            buffer.get(position, bytes);
+            position += bytes.length;
+            return bytes;
+        }
+
+        Object readValue() {
+            byte tag = buffer.get(position++);
+            switch (tag) {
+                case NULL: return null;
+                case STRING: return new String(readBytes(), StandardCharsets.UTF_8);
+                case INT: {
+                    int value = buffer.getInt(position);
+                    position += Integer.BYTES;
+                    return value;
+                }
+                case LONG: return readLong();
+                case DOUBLE: return Double.longBitsToDouble(readLong());
+                case TRUE: return Boolean.TRUE;
+                case FALSE: return Boolean.FALSE;
+                case DECIMAL: return new BigDecimal(new String(readBytes(), StandardCharsets.US_ASCII));
+                case DATE: return LocalDate.ofEpochDay(readLong());
+                case SERIALIZED: return deserialize(readBytes());
+                default: throw new IllegalStateException("Corrupt off-heap row, unknown type tag " + tag);
+            }
+        }
+
+        private static Object deserialize(byte[] bytes) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return in.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalStateException("Failed to read off-heap value", e);
+            }
+        }
+    }
+
+    /**
+     * Encodes rows one at a time into a reusable buffer. Field names get their
+     * index on first use, so rows encoded by one encoder share its fields().
+     */
+    static final class RowEncoder {
+        private final Map<String, Integer> fieldIndexes = new HashMap<>();
+        private final List<String> fields = new ArrayList<>();
+        private byte[] row = new byte[256];
+        private int rowLength;
+
+        /**
+         * Encodes record into bytes(); valid until the next call
+         */
+        void encode(Map<String, Object> record) {
+            rowLength = 0;
+            writeVarInt(record.size());
+            for (Map.Entry<String, Object> entry : record.entrySet()) {
+                writeVarInt(fieldIndexes.computeIfAbsent(entry.getKey(), field -> {
+                    fields.add(field);
+                    return fields.size() - 1;
+                }));
+                writeValue(entry.getValue());
+            }
+        }
+
+        byte[] bytes() { return row; }
+        int length() { return rowLength; }
+
+        String[] fields() {
+            return fields.toArray(new String[0]);
+        }
+
+        private void writeValue(Object value) {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+            } else if (value instanceof Integer) {
+                writeByte(INT);
+                int v = (Integer) value;
+                ensure(Integer.BYTES);
+                for (int shift = 24; shift >= 0; shift -= 8) {
+                    row[rowLength++] = (byte) (v >>> shift);
+                }
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeLong((Long) value);
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof BigDecimal) {
+                writeByte(DECIMAL);
+                writeBytes(value.toString().getBytes(StandardCharsets.US_ASCII));
+            } else if (value instanceof LocalDate) {
+                writeByte(DATE);
+                writeLong(((LocalDate) value).toEpochDay());
+            } else {
+                writeByte(SERIALIZED);
+                writeBytes(serialize(value));
+            }
+        }
+
+        private static byte[] serialize(Object value) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot store " + value.getClass().getName() +
+                    " off heap, values must be Serializable", e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private void writeByte(byte b) {
+            ensure(1);
+            row[rowLength++] = b;
+        }
+
+        private void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                row[rowLength++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            row[rowLength++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                row[rowLength++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, row, rowLength, bytes.length);
+            rowLength += bytes.length;
+        }
+
+        private void ensure(int bytes) {
+            if (rowLength + bytes > row.length) {
+                row = Arrays.copyOf(row, Math.max(row.length * 2, rowLength + bytes));
+            }
+        }
+    }
+
+    /**
+     * Buffers rows on the heap up to the threshold, then encodes every row
+     * into a temp file; finish() maps the file
+     */
+    static final class Writer {
+        private final int thresholdRows;
+        // rows ahead of the current ones: combined writers and rows stored before a fallback
+        private final List<List<Map<String, Object>>> parts = new ArrayList<>();
+        private RowEncoder encoder = new RowEncoder();
+        private List<Map<String, Object>> heapRows = new ArrayList<>();
+        private boolean heapOnly;
+        private long[] offsets = new long[1024];
+        private int rowCount;
+        private long position;
+        private Path file;
+        private OutputStream out;
+
+        Writer(int thresholdRows) {
+            this.thresholdRows = thresholdRows;
+        }
+
+        void add(Map<String, Object> record) {
+            if (heapRows != null) {
+                heapRows.add(record);
+                if (!heapOnly && heapRows.size() > thresholdRows) {
+                    spill();
+                }
+                return;
+            }
+            if (!write(record)) {
+                keepOnHeap(List.of(record));
+            }
+        }
+
+        /**
+         * Appends the rows of a writer holding a later part of the stream. Its
+         * heap rows are added as usual; rows it already stored off heap are
+         * kept as they are rather than decoded and encoded again.
+         */
+        Writer combine(Writer other) {
+            if (other.parts.isEmpty() && other.heapRows != null) {
+                other.heapRows.forEach(this::add);
+                return this;
+            }
+            seal();
+            parts.addAll(other.parts);
+            heapOnly = other.heapOnly;
+            heapRows = other.heapRows;
+            encoder = other.encoder;
+            offsets = other.offsets;
+            rowCount = other.rowCount;
+            position = other.position;
+            file = other.file;
+            out = other.out;
+            other.file = null;
+            other.out = null;
+            return this;
+        }
+
+        List<Map<String, Object>> finish() {
+            List<Map<String, Object>> current = finishCurrent();
+            if (parts.isEmpty()) {
+                return current;
+            }
+            List<List<Map<String, Object>>> all = new ArrayList<>(parts);
+            all.add(current);
+            return new Concatenation(all);
+        }
+
+        private List<Map<String, Object>> finishCurrent() {
+            if (heapRows != null) {
+                return heapRows;
+            }
+            try {
+                out.close();
+                offsets[rowCount] = position;
+                return rowCount > 0 ? map() : Collections.emptyList();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map off-heap rows", e);
+            } finally {
+                delete();
+            }
+        }
+
+        /**
+         * Moves the current rows into parts and starts over on the heap
+         */
+        private void seal() {
+            List<Map<String, Object>> current = finishCurrent();
+            if (!current.isEmpty()) {
+                parts.add(current);
+            }
+            encoder = new RowEncoder();
+            heapRows = new ArrayList<>();
+            heapOnly = false;
+            offsets = new long[1024];
+            rowCount = 0;
+            position = 0;
+        }
+
+        /**
+         * A row cannot be encoded: rows stored so far stay off heap, remaining
+         * and later rows are kept on the heap
+         */
+        private void keepOnHeap(List<Map<String, Object>> remaining) {
+            seal();
+            heapRows.addAll(remaining);
+            heapOnly = true;
+        }
+
+        private void spill() {
+            try {
+                file = Files.createTempFile("table-rows-", ".bin");
+                out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+            } catch (IOException e) {
+                delete();
+                throw new UncheckedIOException("Failed to create off-heap row file", e);
+            }
+            List<Map<String, Object>> buffered = heapRows;
+            heapRows = null;
+            for (int i = 0; i < buffered.size(); i++) {
+                if (!write(buffered.get(i))) {
+                    keepOnHeap(buffered.subList(i, buffered.size()));
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Appends record to the file; false when one of its values cannot be encoded
+         */
+        private boolean write(Map<String, Object> record) {
+            try {
+                encoder.encode(record);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            if (rowCount + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[rowCount++] = position;
+            try {
+                out.write(encoder.bytes(), 0, encoder.length());
+            } catch (IOException e) {
+                delete();
+                throw new UncheckedIOException("Failed to write off-heap rows", e);
+            }
+            position += encoder.length();
+            return true;
+        }
+
+        private OffHeapRows map() throws IOException {
+            long[] rowOffsets = Arrays.copyOf(offsets, rowCount + 1);
+            List<Long> starts = new ArrayList<>();
+            List<MappedByteBuffer> mapped = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                int first = 0;
+                while (first < rowCount) {
+                    long start = rowOffsets[first];
+                    int end = first + 1;
+                    while (end < rowCount && rowOffsets[end + 1] - start <= MAX_SEGMENT) {
+                        end++;
+                    }
+                    starts.add(start);
+                    mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, rowOffsets[end] - start));
+                    first = end;
+                }
+            }
+            return new OffHeapRows(encoder.fields(), rowOffsets,
+                starts.stream().mapToLong(Long::longValue).toArray(),
+                mapped.toArray(new MappedByteBuffer[0]));
+        }
+
+        private void delete() {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                if (file != null) {
+                    file.toFile().deleteOnExit();
+                }
+            } finally {
+                out = null;
+                file = null;
+            }
+        }
+    }
+
+    /**
+     * Non-empty parts of a combined result, in stream order
+     */
+    private static final class Concatenation extends AbstractList<Map<String, Object>> implements RandomAccess {
+        private final List<List<Map<String, Object>>> parts = new ArrayList<>();
+        private final int[] starts;
+        private final int size;
+
+        Concatenation(List<List<Map<String, Object>>> parts) {
+            for (List<Map<String, Object>> part : parts) {
+                if (!part.isEmpty()) {
+                    this.parts.add(part);
+                }
+            }
+            starts = new int[this.parts.size()];
+            int start = 0;
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = start;
+                start += this.parts.get(i).size();
+            }
+            size = start;
+        }
+
+        @Override
+        public Map<String, Object> get(int index) {
+            Objects.checkIndex(index, size);
+            int i = Arrays.binarySearch(starts, index);
+            int part = i >= 0 ? i : -i - 2;
+            return parts.get(part).get(index - starts[part]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
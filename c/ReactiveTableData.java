@@ -0,0 +1,94 @@
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Data source that publishes its rows instead of returning them. The
+ * blocking DataSourceService methods are derived from publishData(), so the
+ * same bean also serves processTableByConfig.
+ */
+interface ReactiveDataSourceService extends DataSourceService {
+    Publisher<Map<String, Object>> publishData();
+
+    @Override
+    default List<Map<String, Object>> fetchData() {
+        List<Map<String, Object>> rows = Flux.from(publishData()).collectList().block();
+        return rows != null ? rows : Collections.emptyList();
+    }
+
+    @Override
+    default Stream<Map<String, Object>> streamData() {
+        return Flux.from(publishData()).toStream();
+    }
+}
+
+/**
+ * Non-blocking counterpart of GenericTableDataComponent for WebFlux callers.
+ * Rows go from the data source through the table's compiled filter and
+ * projection as Reactor operators, so subscriber demand reaches the data
+ * source and a slow client never makes the whole result buffer up.
+ *
+ * Methods returning a Publisher (e.g. ReactiveDataSourceService.publishData)
+ * are subscribed to directly; blocking data source methods are run on the
+ * bounded elastic scheduler, never on the subscriber's thread. Caching,
+ * indexes, sorting and aggregations belong to the blocking path and are not
+ * applied here.
+ */
+@Component
+class ReactiveTableDataComponent {
+    private final TablePlanRegistry planRegistry;
+    private final TableConfigProperties configProperties;
+
+    public ReactiveTableDataComponent(TablePlanRegistry planRegistry, TableConfigProperties configProperties) {
+        this.planRegistry = planRegistry;
+        this.configProperties = configProperties;
+    }
+
+    /**
+     * Filtered and projected rows, in source order
+     */
+    public Flux<Map<String, Object>> streamTableByConfig(String configName) {
+        return Flux.defer(() -> rows(planRegistry.plan(configName)));
+    }
+
+    /**
+     * The table as UTF-8 HTML in the table.ftl layout: the head, one buffer per
+     * chunk of reactiveChunkRows rows, then the foot. A chunk is only built
+     * once the consumer requests it; buffers dropped on cancel are released.
+     */
+    public Flux<DataBuffer> renderTableByConfig(String configName, DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> {
+            TablePlan plan = planRegistry.plan(configName);
+            List<ColumnDefinition> columns = plan.getColumns();
+            int chunkRows = Math.max(1, configProperties.getReactiveChunkRows());
+            Flux<DataBuffer> body = rows(plan)
+                .buffer(chunkRows)
+                .map(chunk -> encode(HtmlTableMarkup.rows(chunk, columns), bufferFactory));
+            return Flux.concat(
+                Mono.fromSupplier(() -> encode(HtmlTableMarkup.head(columns), bufferFactory)),
+                body,
+                Mono.fromSupplier(() -> encode(HtmlTableMarkup.FOOT, bufferFactory)));
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private Flux<Map<String, Object>> rows(TablePlan plan) {
+        // a filter per subscription, custom predicates may keep per-thread state
+        Predicate<Map<String, Object>> filter = plan.getParallelFilter().get();
+        return Flux.from(plan.getDataSource().publishData())
+            .filter(filter)
+            .map(plan.getRowPlan().getProjector());
+    }
+
+    private static DataBuffer encode(String html, DataBufferFactory bufferFactory) {
+        return bufferFactory.wrap(html.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,88 @@
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Single-flight execution of table work. Concurrent calls with equal keys
+ * share one in-flight computation: the first call runs it, the others wait
+ * and receive the same result instance (not a copy) or the same exception.
+ * The key is released when the computation finishes, so a later call runs
+ * it again; nothing is kept beyond the flight.
+ *
+ * When the running call fails because it was interrupted (its async request
+ * was cancelled or timed out), waiting calls do not inherit the failure;
+ * one of them runs the computation again.
+ */
+@Component
+class RequestCoalescer {
+    private static final Object ABANDONED = new Object();
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Callable<T> computation) throws Exception {
+        while (true) {
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+            if (running == null) {
+                return (T) run(key, flight, computation);
+            }
+            Object result = await(running);
+            if (result != ABANDONED) {
+                return (T) result;
+            }
+        }
+    }
+
+    /**
+     * Number of keys with a computation in flight
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    private Object run(Object key, CompletableFuture<Object> flight, Callable<?> computation) throws Exception {
+        try {
+            Object result = computation.call();
+            inFlight.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            inFlight.remove(key, flight);
+            if (interrupted(e)) {
+                flight.complete(ABANDONED);
+            } else {
+                flight.completeExceptionally(e);
+            }
+            throw e;
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> running) throws Exception {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean interrupted(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,363 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Filter and column projection for one table config, backed by a single
+ * generated class so each config gets its own monomorphic call sites
+ */
+class GeneratedRowPlan {
+    private final Predicate<Map<String, Object>> filter;
+    private final Function<Map<String, Object>, Map<String, Object>> projector;
+
+    GeneratedRowPlan(Predicate<Map<String, Object>> filter,
+                     Function<Map<String, Object>, Map<String, Object>> projector) {
+        this.filter = filter;
+        this.projector = projector;
+    }
+
+    public Predicate<Map<String, Object>> getFilter() { return filter; }
+    public Function<Map<String, Object>, Map<String, Object>> getProjector() { return projector; }
+}
+
+/**
+ * Optional code-generation backend. Emits Java source for a FilterConfig tree
+ * plus its columns, compiles it in memory with the system compiler and loads
+ * it as a hidden class, whose final fields the JIT treats as constants.
+ *
+ * Custom filters are not generated: their subtree is compiled by FilterCompiler
+ * and called from the generated class. When no compiler is available (JRE-only
+ * runtime) or generation fails, generate() returns empty and callers stay on
+ * the interpreted path. A failure is logged, with the compiler diagnostics,
+ * once per config; Errors are not caught.
+ */
+@Component
+class RowPlanGenerator {
+    private static final Logger log = LoggerFactory.getLogger(RowPlanGenerator.class);
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    private final FilterCompiler filterCompiler;
+    private final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    // configs whose generation failure was logged; plans are recompiled on every refresh
+    private final Set<String> failedConfigs = ConcurrentHashMap.newKeySet();
+
+    public RowPlanGenerator(FilterCompiler filterCompiler) {
+        this.filterCompiler = filterCompiler;
+    }
+
+    public boolean isAvailable() {
+        return javac != null;
+    }
+
+    public Optional<GeneratedRowPlan> generate(String configName, FilterConfig filter, List<ColumnConfig> columns) {
+        if (!isAvailable()) {
+            return Optional.empty();
+        }
+
+        String className = "GeneratedRowPlan$" + configName.replaceAll("[^A-Za-z0-9]", "_")
+            + "$" + CLASS_COUNTER.incrementAndGet();
+        SourceBuilder source = new SourceBuilder(className);
+        String testExpression = source.filter(filter);
+        String code = source.build(testExpression, columns);
+
+        try {
+            byte[] bytes = compile(className, code);
+            Object instance = instantiate(MethodHandles.lookup().defineHiddenClass(bytes, true),
+                source.constants.toArray());
+
+            @SuppressWarnings("unchecked")
+            Predicate<Map<String, Object>> predicate = (Predicate<Map<String, Object>>) instance;
+            @SuppressWarnings("unchecked")
+            Function<Map<String, Object>, Map<String, Object>> projector =
+                (Function<Map<String, Object>, Map<String, Object>>) instance;
+            return Optional.of(new GeneratedRowPlan(predicate, projector));
+        } catch (Exception e) {
+            if (failedConfigs.add(configName)) {
+                log.warn("Row plan generation failed for table {}, using the interpreted filter", configName, e);
+            }
+            return Optional.empty();
+        }
+    }
+
+    private static Object instantiate(MethodHandles.Lookup lookup, Object[] constants) throws Exception {
+        try {
+            return lookup
+                .findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Object[].class))
+                .invoke(constants);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to instantiate generated row plan", e);
+        }
+    }
+
+    private byte[] compile(String className, String code) {
+        Map<String, ByteArrayOutputStream> output = new HashMap<>();
+        StandardJavaFileManager standard = javac.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + name + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        output.put(name, bytes);
+                        return bytes;
+                    }
+                };
+            }
+        };
+        JavaFileObject sourceFile = new SimpleJavaFileObject(
+                URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean compiled = javac.getTask(null, fileManager, diagnostics,
+                List.of("-proc:none", "-g:none", "-Xlint:none"), null, List.of(sourceFile)).call();
+        if (!compiled || !output.containsKey(className)) {
+            throw new IllegalStateException("Failed to compile row plan " + className + ": "
+                + diagnostics.getDiagnostics());
+        }
+        return output.get(className).toByteArray();
+    }
+
+    /**
+     * Builds the generated class. Every leaf condition becomes a small private
+     * method; and/or/not become boolean expressions over those methods.
+     * Non-literal constants are passed in through the constructor.
+     */
+    private class SourceBuilder {
+        private final String className;
+        private final List<Object> constants = new ArrayList<>();
+        private final List<String> constantTypes = new ArrayList<>();
+        private final StringBuilder fields = new StringBuilder();
+        private final StringBuilder methods = new StringBuilder();
+        private int methodCount;
+
+        SourceBuilder(String className) {
+            this.className = className;
+        }
+
+        String filter(FilterConfig config) {
+            if (config == null) {
+                return "true";
+            }
+
+            String type = config.getType() != null ? config.getType().toLowerCase() : "none";
+            String field = config.getField() != null ? literal(config.getField()) : "null";
+            boolean ci = config.getCaseInsensitive() != null && config.getCaseInsensitive();
+
+            switch (type) {
+                case "equals":
+                    return leaf(field, equalsBody(config, ci));
+                case "not-equals":
+                    return "!" + leaf(field, equalsBody(config, ci));
+                case "range":
+                    return leaf(field, "if (!(v instanceof Comparable)) return false;\n"
+                        + (config.getMinValue() == null ? ""
+                            : "if (cmp(v, " + constant("Object", config.getMinValue()) + ") < 0) return false;\n")
+                        + (config.getMaxValue() == null ? ""
+                            : "if (cmp(v, " + constant("Object", config.getMaxValue()) + ") > 0) return false;\n")
+                        + "return true;");
+                case "in":
+                    return leaf(field, inBody(config, ci));
+                case "not-in":
+                    return "!" + leaf(field, inBody(config, ci));
+                case "contains":
+                case "starts-with":
+                case "ends-with":
+                    return leaf(field, stringMatchBody(type, config, ci));
+                case "is-null":
+                    return "(r.get(" + field + ") == null)";
+                case "is-not-null":
+                    return "(r.get(" + field + ") != null)";
+                case "greater-than":
+                case "less-than":
+                    if (config.getValue() == null) return "false";
+                    return leaf(field, "return v instanceof Comparable && cmp(v, "
+                        + constant("Object", config.getValue()) + ")"
+                        + ("greater-than".equals(type) ? " > 0;" : " < 0;"));
+                case "and":
+                case "or":
+                    if (config.getConditions() == null || config.getConditions().isEmpty()) {
+                        return "and".equals(type) ? "true" : "false";
+                    }
+                    StringJoiner joiner = new StringJoiner("and".equals(type) ? " && " : " || ", "(", ")");
+                    for (FilterConfig condition : config.getConditions()) {
+                        joiner.add(filter(condition));
+                    }
+                    return joiner.toString();
+                case "not":
+                    if (config.getConditions() == null || config.getConditions().isEmpty()) {
+                        return "true";
+                    }
+                    return "!" + filter(config.getConditions().get(0));
+                case "custom":
+                    return constant("java.util.function.Predicate<java.util.Map<String, Object>>",
+                        filterCompiler.compile(config)) + ".test(r)";
+                default:
+                    return "true";
+            }
+        }
+
+        private String equalsBody(FilterConfig config, boolean ci) {
+            if (config.getValue() == null) {
+                return "return v == null;";
+            }
+            String value = constant("Object", config.getValue());
+            if (ci) {
+                String text = constant("String", config.getValue().toString());
+                return "if (v == null) return false;\n"
+                    + "if (v instanceof String) return ((String) v).equalsIgnoreCase(" + text + ");\n"
+                    + "return v.equals(" + value + ");";
+            }
+            return "return v != null && v.equals(" + value + ");";
+        }
+
+        private String inBody(FilterConfig config, boolean ci) {
+            if (config.getValues() == null) {
+                return "return false;";
+            }
+            String values = constant("java.util.Set<Object>", new HashSet<>(config.getValues()));
+            if (ci) {
+                Set<String> ciValues = new HashSet<>();
+                config.getValues().stream().filter(Objects::nonNull)
+                    .forEach(v -> ciValues.add(v.toString().toLowerCase(Locale.ROOT)));
+                return "if (v instanceof String) return " + constant("java.util.Set<String>", ciValues)
+                    + ".contains(((String) v).toLowerCase(java.util.Locale.ROOT));\n"
+                    + "return " + values + ".contains(v);";
+            }
+            return "return " + values + ".contains(v);";
+        }
+
+        private String stringMatchBody(String type, FilterConfig config, boolean ci) {
+            if (config.getValue() == null) {
+                return "return false;";
+            }
+            String search = constant("String", config.getValue().toString());
+            String prefix = "if (v == null) return false;\n"
+                + "String s = v instanceof String ? (String) v : v.toString();\n";
+            if (!ci) {
+                String method = "contains".equals(type) ? "contains"
+                    : "starts-with".equals(type) ? "startsWith" : "endsWith";
+                return prefix + "return s." + method + "(" + search + ");";
+            }
+            int length = config.getValue().toString().length();
+            switch (type) {
+                case "starts-with":
+                    return prefix + "return s.regionMatches(true, 0, " + search + ", 0, " + length + ");";
+                case "ends-with":
+                    return prefix + "return s.length() >= " + length
+                        + " && s.regionMatches(true, s.length() - " + length + ", " + search + ", 0, " + length + ");";
+                default:
+                    return prefix + "for (int i = 0, last = s.length() - " + length + "; i <= last; i++) {\n"
+                        + "    if (s.regionMatches(true, i, " + search + ", 0, " + length + ")) return true;\n"
+                        + "}\n"
+                        + "return false;";
+            }
+        }
+
+        /**
+         * Emits a private leaf method reading the config's field into v
+         */
+        private String leaf(String field, String body) {
+            String name = "f" + methodCount++;
+            methods.append("\n    private boolean ").append(name).append("(java.util.Map<String, Object> r) {\n")
+                .append("        Object v = r.get(").append(field).append(");\n");
+            for (String line : body.split("\n")) {
+                methods.append("        ").append(line).append('\n');
+            }
+            methods.append("    }\n");
+            return name + "(r)";
+        }
+
+        private String constant(String type, Object value) {
+            int index = constants.size();
+            constants.add(value);
+            constantTypes.add(type);
+            fields.append("    private final ").append(type).append(" c").append(index).append(";\n");
+            return "c" + index;
+        }
+
+        String build(String testExpression, List<ColumnConfig> columns) {
+            StringBuilder code = new StringBuilder();
+            code.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(className)
+                .append(" implements java.util.function.Predicate<java.util.Map<String, Object>>,")
+                .append(" java.util.function.Function<java.util.Map<String, Object>, java.util.Map<String, Object>> {\n")
+                .append(fields)
+                .append("\n    public ").append(className).append("(Object[] k) {\n");
+            for (int i = 0; i < constants.size(); i++) {
+                code.append("        c").append(i).append(" = (").append(constantTypes.get(i)).append(") k[").append(i).append("];\n");
+            }
+            code.append("    }\n\n")
+                .append("    public boolean test(java.util.Map<String, Object> r) {\n")
+                .append("        return ").append(testExpression).append(";\n")
+                .append("    }\n\n")
+                .append("    public java.util.Map<String, Object> apply(java.util.Map<String, Object> r) {\n")
+                .append("        java.util.Map<String, Object> m = new java.util.LinkedHashMap<>(")
+                .append(Math.max(16, columns.size() * 4 / 3 + 1)).append(");\n")
+                .append("        Object v;\n");
+            for (ColumnConfig column : columns) {
+                String field = literal(column.getFieldName());
+                code.append("        v = r.get(").append(field).append(");\n")
+                    .append("        m.put(").append(field).append(", v != null ? v : \"\");\n");
+            }
+            code.append("        return m;\n")
+                .append("    }\n\n")
+                .append("    private static int cmp(Object a, Object b) {\n")
+                .append("        return ((Comparable) a).compareTo(b);\n")
+                .append("    }\n")
+                .append(methods)
+                .append("}\n");
+            return code.toString();
+        }
+    }
+
+    /**
+     * Java string literal of value. Control characters use ordinary and octal
+     * escapes: unicode escapes are translated before lexing, so an escaped
+     * line break would still end the literal. Other non-ASCII characters are
+     * written as unicode escapes.
+     */
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c == '\n') {
+                literal.append("\\n");
+            } else if (c == '\r') {
+                literal.append("\\r");
+            } else if (c == '\t') {
+                literal.append("\\t");
+            } else if (c < 0x20 || c == 0x7f) {
+                // three digits, so a following digit is not read as part of the escape
+                literal.append(String.format("\\%03o", (int) c));
+            } else if (c > 0x7e) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -0,0 +1,562 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Aggregation section of a table config from YAML
+ *
+ * aggregations:
+ *   groupBy: [department]
+ *   metrics:
+ *     - name: totalSalary
+ *       function: sum            # sum, count, min, max, avg, distinct-count
+ *       field: salary            # count without a field counts rows
+ *     - name: managers
+ *       function: distinct-count
+ *       field: manager
+ *       approximate: true        # HyperLogLog instead of an exact set
+ */
+class AggregationConfig {
+    private List<String> groupBy = new ArrayList<>();
+    private List<MetricConfig> metrics = new ArrayList<>();
+
+    public List<String> getGroupBy() { return groupBy; }
+    public void setGroupBy(List<String> groupBy) { this.groupBy = groupBy; }
+
+    public List<MetricConfig> getMetrics() { return metrics; }
+    public void setMetrics(List<MetricConfig> metrics) { this.metrics = metrics; }
+}
+
+class MetricConfig {
+    private String name;
+    private String function;
+    private String field;
+    private boolean approximate = false;
+    private int precision = 14;
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getFunction() { return function; }
+    public void setFunction(String function) { this.function = function; }
+
+    public String getField() { return field; }
+    public void setField(String field) { this.field = field; }
+
+    public boolean isApproximate() { return approximate; }
+    public void setApproximate(boolean approximate) { this.approximate = approximate; }
+
+    /**
+     * HyperLogLog precision: 2^precision registers, standard error about 1.04 / sqrt(2^precision)
+     */
+    public int getPrecision() { return precision; }
+    public void setPrecision(int precision) { this.precision = precision; }
+}
+
+/**
+ * Totals and per-group subtotal rows. Subtotal rows hold the groupBy fields
+ * followed by the metric names, in first-seen group order.
+ */
+class AggregationResult {
+    private final Map<String, Object> totals;
+    private final List<Map<String, Object>> subtotals;
+
+    AggregationResult(Map<String, Object> totals, List<Map<String, Object>> subtotals) {
+        this.totals = totals;
+        this.subtotals = subtotals;
+    }
+
+    public Map<String, Object> getTotals() { return totals; }
+    public List<Map<String, Object>> getSubtotals() { return subtotals; }
+}
+
+/**
+ * One metric's running state. Integral values arrive as long, BigDecimal and
+ * BigInteger as BigDecimal and other numbers as double, so primitive metrics
+ * never box; non-numeric values go through acceptObject. Accumulators of the
+ * same metric can be merged, which is how chunk results of the parallel
+ * pipeline are combined.
+ */
+abstract class Accumulator {
+    abstract void acceptLong(long value);
+    abstract void acceptDouble(double value);
+    abstract void acceptObject(Object value);
+
+    /**
+     * Exact decimal; metrics without a decimal path see its double value
+     */
+    void acceptDecimal(BigDecimal value) {
+        acceptDouble(value.doubleValue());
+    }
+
+    abstract void merge(Accumulator other);
+    abstract Object result();
+    abstract Accumulator newEmpty();
+
+    final void accept(Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            acceptLong(((Number) value).longValue());
+        } else if (value instanceof BigDecimal) {
+            acceptDecimal((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            acceptDecimal(new BigDecimal((BigInteger) value));
+        } else if (value instanceof Number) {
+            acceptDouble(((Number) value).doubleValue());
+        } else {
+            acceptObject(value);
+        }
+    }
+
+    static Accumulator of(MetricConfig metric) {
+        String function = metric.getFunction() != null ? metric.getFunction().toLowerCase() : "";
+        if (metric.getField() == null && !"count".equals(function)) {
+            throw new IllegalArgumentException("Metric " + metric.getName() + " (" + function + ") needs a field");
+        }
+        switch (function) {
+            case "count":
+                return new CountAccumulator();
+            case "sum":
+                return new SumAccumulator();
+            case "avg":
+                return new AvgAccumulator();
+            case "min":
+                return new ExtremeAccumulator(false);
+            case "max":
+                return new ExtremeAccumulator(true);
+            case "distinct-count":
+                return metric.isApproximate()
+                    ? new HyperLogLogAccumulator(metric.getPrecision())
+                    : new DistinctAccumulator();
+            default:
+                throw new IllegalArgumentException("Unknown aggregate function: " + metric.getFunction());
+        }
+    }
+
+    static final class CountAccumulator extends Accumulator {
+        private long count;
+
+        void acceptLong(long value) { count++; }
+        void acceptDouble(double value) { count++; }
+        void acceptObject(Object value) { count++; }
+        void merge(Accumulator other) { count += ((CountAccumulator) other).count; }
+        Object result() { return count; }
+        Accumulator newEmpty() { return new CountAccumulator(); }
+    }
+
+    /**
+     * Sum of sum and avg: long while every value is integral and fits, BigDecimal
+     * once a decimal value appears or the long sum would overflow, double once a
+     * double value appears
+     */
+    static final class ExactSum {
+        private long longSum;
+        private BigDecimal decimalSum;
+        private double doubleSum;
+        private boolean floating;
+
+        void addLong(long value) {
+            try {
+                longSum = Math.addExact(longSum, value);
+            } catch (ArithmeticException e) {
+                addDecimal(BigDecimal.valueOf(longSum).add(BigDecimal.valueOf(value)));
+                longSum = 0;
+            }
+        }
+
+        void addDecimal(BigDecimal value) {
+            decimalSum = decimalSum != null ? decimalSum.add(value) : value;
+        }
+
+        void addDouble(double value) {
+            doubleSum += value;
+            floating = true;
+        }
+
+        void merge(ExactSum other) {
+            addLong(other.longSum);
+            if (other.decimalSum != null) addDecimal(other.decimalSum);
+            doubleSum += other.doubleSum;
+            floating |= other.floating;
+        }
+
+        boolean isFloating() { return floating; }
+        boolean isDecimal() { return decimalSum != null; }
+
+        double doubleValue() {
+            return longSum + (decimalSum != null ? decimalSum.doubleValue() : 0) + doubleSum;
+        }
+
+        BigDecimal decimalValue() {
+            return decimalSum.add(BigDecimal.valueOf(longSum));
+        }
+
+        /**
+         * Long, BigDecimal or Double, whichever type the sum stayed exact in
+         */
+        Object value() {
+            if (floating) return doubleValue();
+            if (decimalSum != null) return decimalValue();
+            return longSum;
+        }
+    }
+
+    static final class SumAccumulator extends Accumulator {
+        private final ExactSum sum = new ExactSum();
+
+        void acceptLong(long value) { sum.addLong(value); }
+        void acceptDouble(double value) { sum.addDouble(value); }
+        void acceptDecimal(BigDecimal value) { sum.addDecimal(value); }
+        void acceptObject(Object value) { }
+        void merge(Accumulator other) { sum.merge(((SumAccumulator) other).sum); }
+        Object result() { return sum.value(); }
+        Accumulator newEmpty() { return new SumAccumulator(); }
+    }
+
+    /**
+     * Double average, or BigDecimal (to 34 digits) when decimal values contributed
+     * and no double did
+     */
+    static final class AvgAccumulator extends Accumulator {
+        private final ExactSum sum = new ExactSum();
+        private long count;
+
+        void acceptLong(long value) { sum.addLong(value); count++; }
+        void acceptDouble(double value) { sum.addDouble(value); count++; }
+        void acceptDecimal(BigDecimal value) { sum.addDecimal(value); count++; }
+        void acceptObject(Object value) { }
+
+        void merge(Accumulator other) {
+            AvgAccumulator avg = (AvgAccumulator) other;
+            sum.merge(avg.sum);
+            count += avg.count;
+        }
+
+        Object result() {
+            if (count == 0) return null;
+            if (sum.isDecimal() && !sum.isFloating()) {
+                return sum.decimalValue().divide(BigDecimal.valueOf(count), MathContext.DECIMAL128);
+            }
+            return sum.doubleValue() / count;
+        }
+
+        Accumulator newEmpty() { return new AvgAccumulator(); }
+    }
+
+    /**
+     * min or max; numbers are compared by value, other values with the
+     * ordering used for sorting, and numbers win over non-numeric values
+     */
+    static final class ExtremeAccumulator extends Accumulator {
+        private final boolean max;
+        private boolean hasLong;
+        private long bestLong;
+        private boolean hasDouble;
+        private double bestDouble;
+        private BigDecimal bestDecimal;
+        private Object bestObject;
+
+        ExtremeAccumulator(boolean max) {
+            this.max = max;
+        }
+
+        void acceptLong(long value) {
+            if (!hasLong || (max ? value > bestLong : value < bestLong)) {
+                bestLong = value;
+                hasLong = true;
+            }
+        }
+
+        void acceptDouble(double value) {
+            if (!hasDouble || (max ? value > bestDouble : value < bestDouble)) {
+                bestDouble = value;
+                hasDouble = true;
+            }
+        }
+
+        void acceptDecimal(BigDecimal value) {
+            if (bestDecimal == null || (max ? value.compareTo(bestDecimal) > 0 : value.compareTo(bestDecimal) < 0)) {
+                bestDecimal = value;
+            }
+        }
+
+        void acceptObject(Object value) {
+            if (bestObject == null) {
+                bestObject = value;
+                return;
+            }
+            int c = TableQuery.compareValues(value, bestObject);
+            if (max ? c > 0 : c < 0) {
+                bestObject = value;
+            }
+        }
+
+        void merge(Accumulator other) {
+            ExtremeAccumulator extreme = (ExtremeAccumulator) other;
+            if (extreme.hasLong) acceptLong(extreme.bestLong);
+            if (extreme.hasDouble) acceptDouble(extreme.bestDouble);
+            if (extreme.bestDecimal != null) acceptDecimal(extreme.bestDecimal);
+            if (extreme.bestObject != null) acceptObject(extreme.bestObject);
+        }
+
+        Object result() {
+            Object best = null;
+            if (hasLong) best = bestLong;
+            if (hasDouble) best = better(best, bestDouble);
+            if (bestDecimal != null) best = better(best, bestDecimal);
+            return best != null ? best : bestObject;
+        }
+
+        /**
+         * Of two numbers of different types, compared exactly where both are finite
+         */
+        private Object better(Object current, Object candidate) {
+            if (current == null) {
+                return candidate;
+            }
+            int c = Double.isFinite(((Number) current).doubleValue()) && Double.isFinite(((Number) candidate).doubleValue())
+                ? decimal(candidate).compareTo(decimal(current))
+                : Double.compare(((Number) candidate).doubleValue(), ((Number) current).doubleValue());
+            return (max ? c > 0 : c < 0) ? candidate : current;
+        }
+
+        private static BigDecimal decimal(Object number) {
+            if (number instanceof BigDecimal) return (BigDecimal) number;
+            if (number instanceof Long) return BigDecimal.valueOf((Long) number);
+            return new BigDecimal((Double) number);
+        }
+
+        Accumulator newEmpty() { return new ExtremeAccumulator(max); }
+    }
+
+    /**
+     * Exact distinct count; integral numbers count as the same value regardless of type
+     */
+    static final class DistinctAccumulator extends Accumulator {
+        private final Set<Object> values = new HashSet<>();
+
+        void acceptLong(long value) { values.add(value); }
+        void acceptDouble(double value) { values.add(value); }
+        void acceptObject(Object value) { values.add(value); }
+        void merge(Accumulator other) { values.addAll(((DistinctAccumulator) other).values); }
+        Object result() { return (long) values.size(); }
+        Accumulator newEmpty() { return new DistinctAccumulator(); }
+    }
+
+    /**
+     * Approximate distinct count in 2^precision byte registers; merging takes
+     * the register-wise maximum, so chunk sketches combine losslessly
+     */
+    static final class HyperLogLogAccumulator extends Accumulator {
+        private final int precision;
+        private final byte[] registers;
+
+        HyperLogLogAccumulator(int precision) {
+            this.precision = Math.max(4, Math.min(16, precision));
+            this.registers = new byte[1 << this.precision];
+        }
+
+        void acceptLong(long value) { add(mix(value)); }
+        void acceptDouble(double value) { add(mix(Double.doubleToLongBits(value))); }
+
+        void acceptObject(Object value) {
+            if (value instanceof String) {
+                // 64-bit FNV-1a, String.hashCode has too few bits for large cardinalities
+                String s = (String) value;
+                long hash = 0xcbf29ce484222325L;
+                for (int i = 0; i < s.length(); i++) {
+                    hash = (hash ^ s.charAt(i)) * 0x100000001b3L;
+                }
+                add(mix(hash));
+            } else {
+                add(mix(value.hashCode()));
+            }
+        }
+
+        private void add(long hash) {
+            int index = (int) (hash >>> (64 - precision));
+            long rest = (hash << precision) | (1L << (precision - 1));
+            byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+            if (rank > registers[index]) {
+                registers[index] = rank;
+            }
+        }
+
+        void merge(Accumulator other) {
+            byte[] theirs = ((HyperLogLogAccumulator) other).registers;
+            for (int i = 0; i < registers.length; i++) {
+                if (theirs[i] > registers[i]) {
+                    registers[i] = theirs[i];
+                }
+            }
+        }
+
+        Object result() {
+            int m = registers.length;
+            double sum = 0;
+            int zeros = 0;
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) zeros++;
+            }
+            double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+            double estimate = alpha * m * m / sum;
+            if (estimate <= 2.5 * m && zeros > 0) {
+                estimate = m * Math.log((double) m / zeros);
+            }
+            return Math.round(estimate);
+        }
+
+        Accumulator newEmpty() { return new HyperLogLogAccumulator(precision); }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
+
+/**
+ * Running totals and per-group accumulators for one pass over filtered rows.
+ * Not thread-safe: parallel chunks each use newEmpty() and are merged in order.
+ */
+class Aggregator {
+    private final String[] groupBy;
+    private final String[] names;
+    private final String[] fields;
+    private final Accumulator[] totals;
+    private final Map<List<Object>, Accumulator[]> groups = new LinkedHashMap<>();
+
+    Aggregator(AggregationConfig config) {
+        this.groupBy = config.getGroupBy() != null ? config.getGroupBy().toArray(new String[0]) : new String[0];
+        List<MetricConfig> metrics = config.getMetrics() != null ? config.getMetrics() : List.of();
+        this.names = metrics.stream().map(MetricConfig::getName).toArray(String[]::new);
+        this.fields = metrics.stream().map(MetricConfig::getField).toArray(String[]::new);
+        this.totals = metrics.stream().map(Accumulator::of).toArray(Accumulator[]::new);
+    }
+
+    private Aggregator(Aggregator prototype) {
+        this.groupBy = prototype.groupBy;
+        this.names = prototype.names;
+        this.fields = prototype.fields;
+        this.totals = fresh(prototype.totals);
+    }
+
+    public Aggregator newEmpty() {
+        return new Aggregator(this);
+    }
+
+    /**
+     * Fields the aggregation reads besides the displayed columns
+     */
+    public Set<String> getFields() {
+        Set<String> result = new LinkedHashSet<>(Arrays.asList(groupBy));
+        for (String field : fields) {
+            if (field != null) result.add(field);
+        }
+        return result;
+    }
+
+    public void accept(Map<String, Object> row) {
+        Accumulator[] group = group(row::get);
+        for (int i = 0; i < fields.length; i++) {
+            Object value = fields[i] != null ? row.get(fields[i]) : Boolean.TRUE;
+            totals[i].accept(value);
+            if (group != null) group[i].accept(value);
+        }
+    }
+
+    /**
+     * Columnar variant: int, long and double columns feed the accumulators primitives
+     */
+    public void accept(ColumnarTableData data, int row) {
+        Accumulator[] group = group(field -> {
+            ColumnVector column = data.column(field);
+            return column != null ? column.get(row) : null;
+        });
+        for (int i = 0; i < fields.length; i++) {
+            accept(totals[i], data, fields[i], row);
+            if (group != null) accept(group[i], data, fields[i], row);
+        }
+    }
+
+    private static void accept(Accumulator accumulator, ColumnarTableData data, String field, int row) {
+        if (field == null) {
+            accumulator.acceptObject(Boolean.TRUE);
+            return;
+        }
+        ColumnVector column = data.column(field);
+        if (column == null || column.isNull(row)) {
+            return;
+        }
+        if (column instanceof IntColumn) {
+            accumulator.acceptLong(((IntColumn) column).getInt(row));
+        } else if (column instanceof LongColumn) {
+            accumulator.acceptLong(((LongColumn) column).getLong(row));
+        } else if (column instanceof DoubleColumn) {
+            accumulator.acceptDouble(((DoubleColumn) column).getDouble(row));
+        } else {
+            accumulator.accept(column.get(row));
+        }
+    }
+
+    private Accumulator[] group(Function<String, Object> values) {
+        if (groupBy.length == 0) {
+            return null;
+        }
+        Object[] key = new Object[groupBy.length];
+        for (int i = 0; i < groupBy.length; i++) {
+            key[i] = values.apply(groupBy[i]);
+        }
+        return groups.computeIfAbsent(Arrays.asList(key), k -> fresh(totals));
+    }
+
+    public void merge(Aggregator other) {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i].merge(other.totals[i]);
+        }
+        other.groups.forEach((key, accumulators) -> {
+            Accumulator[] group = groups.computeIfAbsent(key, k -> fresh(totals));
+            for (int i = 0; i < group.length; i++) {
+                group[i].merge(accumulators[i]);
+            }
+        });
+    }
+
+    public AggregationResult result() {
+        List<Map<String, Object>> subtotals = new ArrayList<>(groups.size());
+        groups.forEach((key, accumulators) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < groupBy.length; i++) {
+                row.put(groupBy[i], key.get(i));
+            }
+            putResults(row, accumulators);
+            subtotals.add(row);
+        });
+        Map<String, Object> totalRow = new LinkedHashMap<>();
+        putResults(totalRow, totals);
+        return new AggregationResult(totalRow, subtotals);
+    }
+
+    private void putResults(Map<String, Object> row, Accumulator[] accumulators) {
+        for (int i = 0; i < names.length; i++) {
+            row.put(names[i], accumulators[i].result());
+        }
+    }
+
+    private static Accumulator[] fresh(Accumulator[] prototypes) {
+        Accumulator[] result = new Accumulator[prototypes.length];
+        for (int i = 0; i < prototypes.length; i++) {
+            result[i] = prototypes[i].newEmpty();
+        }
+        return result;
+    }
+}
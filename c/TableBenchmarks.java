@@ -0,0 +1,381 @@
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import freemarker.template.Template;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * JMH benchmarks of the table hot paths on synthetic rows: every FilterBuilder
+ * filter type and nested and/or trees (interpreted and compiled),
+ * extractColumns projection, table.ftl rendering (TableHtmlWriter and
+ * FreeMarker) and renderTableAsPdf. Each benchmark reports throughput and
+ * sampled latency percentiles; main() adds the GC profiler, so allocation
+ * rate (gc.alloc.rate.norm) is reported per operation.
+ *
+ * Rows are shaped by rowCount (pdfRowCount for the PDF benchmark),
+ * columnCount, valueTypes (mixed, strings, numbers) and selectivity, the
+ * fraction of rows each filter matches.
+ *
+ * benchmarks/pom.xml describes the build, but it only compiles in a project
+ * that has the complete renderer classes (see the note in the pom); the
+ * snippets in this tree do not. There, mvn -f benchmarks/pom.xml package,
+ * then java --add-modules jdk.incubator.vector -jar benchmarks/target/benchmarks.jar
+ * [jmh options], e.g. -p rowCount=1000000
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class TableBenchmarks {
+    private static final int SCORE_RANGE = 10_000;
+    private static final String HIT = "hit";
+    private static final String[] MISSES = {"miss0", "miss1", "miss2", "miss3", "miss4", "miss5"};
+
+    public static void main(String[] args) throws Exception {
+        // command line options (-p, -f, -prof ...) take precedence over these
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(TableBenchmarks.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+
+    @Benchmark
+    public long filter(FilterState state) {
+        long matched = 0;
+        for (Map<String, Object> row : state.rows) {
+            if (state.predicate.test(row)) matched++;
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public void project(ProjectionState state, Blackhole blackhole) {
+        for (Map<String, Object> row : state.rows) {
+            blackhole.consume(TablePlanRegistry.extractColumns(row, state.columns));
+        }
+    }
+
+    @Benchmark
+    public void render(RenderState state) throws Exception {
+        Writer out = Writer.nullWriter();
+        if ("freemarker".equals(state.renderer)) {
+            state.template.process(state.dataModel(), out);
+        } else {
+            state.tableRenderer.renderRows(state.projected.iterator(), state.columns, state.template, out);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void renderPdf(PdfState state) throws Exception {
+        state.pdfRenderer.renderTableAsPdf(PdfState.TABLE_KEY, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Shape of the synthetic rows shared by all states
+     */
+    public abstract static class RowShape {
+        @Param({"12"})
+        public int columnCount;
+
+        @Param({"mixed"})
+        public String valueTypes;
+
+        @Param({"0.1"})
+        public double selectivity;
+
+        List<Map<String, Object>> rows;
+
+        void generate(int rowCount) {
+            rows = generateRows(rowCount, columnCount, valueTypes, selectivity, 42L);
+        }
+    }
+
+    public abstract static class RowState extends RowShape {
+        @Param({"100000"})
+        public int rowCount;
+
+        void generate() {
+            generate(rowCount);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FilterState extends RowState {
+        @Param({"equals", "not-equals", "range", "in", "not-in", "contains", "starts-with", "ends-with",
+                "is-null", "is-not-null", "greater-than", "less-than", "and", "or", "not", "nested"})
+        public String filterType;
+
+        @Param({"builder", "compiled"})
+        public String engine;
+
+        Predicate<Map<String, Object>> predicate;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            generate();
+            FilterBuilder builder = new FilterBuilder(null);
+            FilterConfig filter = filter(filterType, selectivity);
+            predicate = "compiled".equals(engine)
+                ? new FilterCompiler(builder, new TableConfigProperties()).compile(filter)
+                : builder.buildPredicate(filter);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ProjectionState extends RowState {
+        List<ColumnDefinition> columns;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            generate();
+            // every other generated column, so projection drops fields as real configs do
+            List<String> fields = fieldNames(columnCount);
+            columns = new ArrayList<>();
+            for (int i = 0; i < fields.size(); i += 2) {
+                columns.add(new ColumnDefinition(fields.get(i), fields.get(i).toUpperCase()));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RenderState extends RowState {
+        @Param({"writer", "freemarker"})
+        public String renderer;
+
+        TableRenderer tableRenderer;
+        Template template;
+        List<ColumnDef> columns;
+        List<Map<String, Object>> projected;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            generate();
+            tableRenderer = new TableRenderer();
+            template = tableRenderer.getTemplate("table.ftl");
+            columns = columnDefs(columnCount);
+            projected = rows.stream()
+                .map(row -> TableRenderer.project(row, columns))
+                .collect(Collectors.toList());
+        }
+
+        Map<String, Object> dataModel() {
+            Map<String, Object> dataModel = new HashMap<>();
+            dataModel.put("filteredData", projected.iterator());
+            dataModel.put("columns", columns.stream().map(ColumnDef::toMap).collect(Collectors.toList()));
+            return dataModel;
+        }
+    }
+
+    /**
+     * renderTableAsPdf of TableRenderer2 over a fixed plan: the generated rows
+     * as its data source, all columns, no criteria
+     */
+    @State(Scope.Benchmark)
+    public static class PdfState extends RowShape {
+        static final String TABLE_KEY = "bench";
+
+        // conversion runs per page and dominates, so fewer rows than the other benchmarks
+        @Param({"5000"})
+        public int pdfRowCount;
+
+        @Param({"500"})
+        public int pdfPageSize;
+
+        ConfiguredTableRenderer pdfRenderer;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            generate(pdfRowCount);
+            TableRenderer tableRenderer = new TableRenderer();
+            List<ColumnDef> columns = columnDefs(columnCount);
+            TableRenderConfig.TableSpec spec = new TableRenderConfig.TableSpec();
+            spec.setColumns(columns);
+            spec.setPdfPageSize(pdfPageSize);
+            RenderPlan plan = new RenderPlan(spec, TABLE_KEY,
+                MethodHandles.constant(Object.class, rows),
+                row -> true,
+                columns,
+                tableRenderer.formatters(columns),
+                tableRenderer.getTemplate(spec.getTemplate()),
+                null);
+
+            StaticListableBeanFactory beans = new StaticListableBeanFactory();
+            TableMetrics metrics = new TableMetrics(beans.getBeanProvider(MeterRegistry.class),
+                beans.getBeanProvider(ObservationRegistry.class), new TableConfigProperties());
+            pdfRenderer = new ConfiguredTableRenderer(tableRenderer, new HtmlToPdfService(), null,
+                new FixedPlanRegistry(plan), null, metrics);
+        }
+    }
+
+    /**
+     * RenderPlanRegistry that serves one prebuilt plan for every key
+     */
+    static final class FixedPlanRegistry extends RenderPlanRegistry {
+        private final RenderPlan plan;
+
+        FixedPlanRegistry(RenderPlan plan) {
+            super(null, null, null);
+            this.plan = plan;
+        }
+
+        @Override
+        public RenderPlan plan(String tableKey) {
+            return plan;
+        }
+    }
+
+    /**
+     * Rows with id, score (uniform in 0..SCORE_RANGE), tag ("hit" in
+     * selectivity of the rows) and note (null in selectivity of the rows),
+     * followed by columnCount filler columns c0..cN of the given value types
+     */
+    static List<Map<String, Object>> generateRows(int rowCount, int columnCount, String valueTypes,
+                                                  double selectivity, long seed) {
+        Random random = new Random(seed);
+        List<String> fillers = fieldNames(columnCount).subList(4, columnCount + 4);
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("score", random.nextInt(SCORE_RANGE));
+            row.put("tag", random.nextDouble() < selectivity ? HIT : MISSES[random.nextInt(MISSES.length)]);
+            row.put("note", random.nextDouble() < selectivity ? null : "note " + random.nextInt(100));
+            for (int c = 0; c < fillers.size(); c++) {
+                row.put(fillers.get(c), value(valueTypes, c, random));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static Object value(String valueTypes, int column, Random random) {
+        int kind;
+        switch (valueTypes) {
+            case "strings": kind = 3; break;
+            case "numbers": kind = column % 3; break;
+            default: kind = column % 5;
+        }
+        switch (kind) {
+            case 0: return random.nextInt(1_000_000);
+            case 1: return random.nextLong();
+            case 2: return random.nextDouble() * 1000;
+            case 3: return "value " + random.nextInt(1000);
+            default: return LocalDate.ofEpochDay(18_000 + random.nextInt(3650));
+        }
+    }
+
+    static List<String> fieldNames(int columnCount) {
+        List<String> fields = new ArrayList<>(List.of("id", "score", "tag", "note"));
+        for (int c = 0; c < columnCount; c++) {
+            fields.add("c" + c);
+        }
+        return fields;
+    }
+
+    private static List<ColumnDef> columnDefs(int columnCount) {
+        return fieldNames(columnCount).stream().map(field -> {
+            ColumnDef column = new ColumnDef();
+            column.setField(field);
+            column.setLabel(field.toUpperCase());
+            return column;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Filter of the given type matching about selectivity of the generated
+     * rows (not-equals, not-in, is-not-null and not match the rest)
+     */
+    static FilterConfig filter(String type, double selectivity) {
+        int threshold = (int) (SCORE_RANGE * selectivity);
+        switch (type) {
+            case "equals":
+            case "not-equals":
+                return leaf(type, "tag", HIT);
+            case "contains":
+                return leaf(type, "tag", "it");
+            case "starts-with":
+                return leaf(type, "tag", "hi");
+            case "ends-with":
+                return leaf(type, "tag", "t");
+            case "in":
+            case "not-in":
+                return in(type, "tag", HIT, "absent", "other");
+            case "range":
+                return range("score", 0, threshold - 1);
+            case "greater-than":
+                return leaf(type, "score", SCORE_RANGE - threshold - 1);
+            case "less-than":
+                return leaf(type, "score", threshold);
+            case "is-null":
+            case "is-not-null":
+                return leaf(type, "note", null);
+            case "and":
+                return node("and", range("score", 0, SCORE_RANGE / 2),
+                    leaf("equals", "tag", HIT), leaf("is-not-null", "note", null));
+            case "or":
+                return node("or", leaf("equals", "tag", HIT), leaf("less-than", "score", threshold));
+            case "not":
+                return node("not", leaf("equals", "tag", HIT));
+            case "nested":
+                return node("or",
+                    node("and", leaf("contains", "tag", "HI", true), leaf("less-than", "score", SCORE_RANGE / 2)),
+                    node("and", in("in", "tag", "miss0", "miss1"), leaf("is-null", "note", null)),
+                    node("not", node("or", leaf("greater-than", "score", threshold), leaf("is-not-null", "note", null))));
+            default:
+                throw new IllegalArgumentException("Unknown filter type: " + type);
+        }
+    }
+
+    private static FilterConfig leaf(String type, String field, Object value) {
+        return leaf(type, field, value, false);
+    }
+
+    private static FilterConfig leaf(String type, String field, Object value, boolean caseInsensitive) {
+        FilterConfig config = new FilterConfig();
+        config.setType(type);
+        config.setField(field);
+        config.setValue(value);
+        config.setCaseInsensitive(caseInsensitive);
+        return config;
+    }
+
+    private static FilterConfig range(String field, Object min, Object max) {
+        FilterConfig config = leaf("range", field, null);
+        config.setMinValue(min);
+        config.setMaxValue(max);
+        return config;
+    }
+
+    private static FilterConfig in(String type, String field, Object... values) {
+        FilterConfig config = leaf(type, field, null);
+        config.setValues(Arrays.asList(values));
+        return config;
+    }
+
+    private static FilterConfig node(String type, FilterConfig... conditions) {
+        FilterConfig config = new FilterConfig();
+        config.setType(type);
+        config.setConditions(Arrays.asList(conditions));
+        return config;
+    }
+}
@@ -0,0 +1,437 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Secondary index declaration from YAML
+ *
+ * type: hash   - equality and in lookups
+ *       sorted - range, greater-than and less-than lookups
+ */
+class IndexConfig {
+    public static final String HASH = "hash";
+    public static final String SORTED = "sorted";
+
+    private String field;
+    private String type = HASH;
+
+    public String getField() { return field; }
+    public void setField(String field) { this.field = field; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+}
+
+/**
+ * Source rows as cached for one data source, shared by every config reading
+ * it. Each distinct set of index declarations is built once over these rows,
+ * so configs with different indexes still share the fetched rows.
+ */
+class CachedSource extends AbstractList<Map<String, Object>> implements RandomAccess {
+    private final List<Map<String, Object>> rows;
+    private final Map<String, IndexedRows> indexed = new ConcurrentHashMap<>();
+
+    CachedSource(List<Map<String, Object>> source) {
+        this.rows = source instanceof RandomAccess ? source : new ArrayList<>(source);
+    }
+
+    /**
+     * The rows with the given indexes, built on first use
+     */
+    public IndexedRows indexed(List<IndexConfig> indexes) {
+        StringBuilder key = new StringBuilder();
+        for (IndexConfig index : indexes) {
+            key.append(index.getType().toLowerCase()).append(':').append(index.getField()).append(';');
+        }
+        return indexed.computeIfAbsent(key.toString(), k -> IndexedRows.build(rows, indexes));
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+}
+
+/**
+ * Cached source rows together with the indexes declared for the table.
+ * Built once per cached source list, so every request filtering that
+ * source shares the indexes.
+ */
+class IndexedRows extends AbstractList<Map<String, Object>> implements RandomAccess {
+    private final List<Map<String, Object>> rows;
+    private final Map<String, HashIndex> hashIndexes;
+    private final Map<String, SortedIndex> sortedIndexes;
+
+    private IndexedRows(List<Map<String, Object>> rows,
+                        Map<String, HashIndex> hashIndexes,
+                        Map<String, SortedIndex> sortedIndexes) {
+        this.rows = rows;
+        this.hashIndexes = hashIndexes;
+        this.sortedIndexes = sortedIndexes;
+    }
+
+    public static IndexedRows build(List<Map<String, Object>> source, List<IndexConfig> indexes) {
+        List<Map<String, Object>> rows = source instanceof RandomAccess ? source : new ArrayList<>(source);
+        Map<String, HashIndex> hashIndexes = new HashMap<>();
+        Map<String, SortedIndex> sortedIndexes = new HashMap<>();
+        for (IndexConfig index : indexes) {
+            if (IndexConfig.SORTED.equalsIgnoreCase(index.getType())) {
+                SortedIndex sorted = SortedIndex.build(rows, index.getField());
+                if (sorted != null) {
+                    sortedIndexes.put(index.getField(), sorted);
+                }
+            } else {
+                hashIndexes.put(index.getField(), HashIndex.build(rows, index.getField()));
+            }
+        }
+        return new IndexedRows(rows, hashIndexes, sortedIndexes);
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    HashIndex hashIndex(String field) {
+        return hashIndexes.get(field);
+    }
+
+    SortedIndex sortedIndex(String field) {
+        return sortedIndexes.get(field);
+    }
+
+    /**
+     * Row ids per distinct value, ids ascending. Lookups use equals(), the same
+     * comparison as the equals and in filters, including null.
+     */
+    static final class HashIndex {
+        private final Map<Object, int[]> ids;
+
+        private HashIndex(Map<Object, int[]> ids) {
+            this.ids = ids;
+        }
+
+        static HashIndex build(List<Map<String, Object>> rows, String field) {
+            Map<Object, Bucket> buckets = new HashMap<>();
+            for (int i = 0; i < rows.size(); i++) {
+                buckets.computeIfAbsent(rows.get(i).get(field), value -> new Bucket()).add(i);
+            }
+            Map<Object, int[]> ids = new HashMap<>(buckets.size() * 2);
+            buckets.forEach((value, bucket) -> ids.put(value, Arrays.copyOf(bucket.ids, bucket.size)));
+            return new HashIndex(ids);
+        }
+
+        int[] lookup(Object value) {
+            int[] result = ids.get(value);
+            return result != null ? result : new int[0];
+        }
+
+        int count(Object value) {
+            int[] result = ids.get(value);
+            return result != null ? result.length : 0;
+        }
+
+        private static final class Bucket {
+            private int[] ids = new int[4];
+            private int size;
+
+            void add(int id) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = id;
+            }
+        }
+    }
+
+    /**
+     * Non-null values in ascending order with their row ids. Only built when
+     * every non-null value has the same Comparable class, so lookups order
+     * values exactly as the range and compare filters do.
+     */
+    static final class SortedIndex {
+        private final Class<?> valueType;
+        private final Object[] keys;
+        private final int[] ids;
+
+        private SortedIndex(Class<?> valueType, Object[] keys, int[] ids) {
+            this.valueType = valueType;
+            this.keys = keys;
+            this.ids = ids;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static SortedIndex build(List<Map<String, Object>> rows, String field) {
+            // each row is read once; rows.get() decodes the whole row on off-heap sources
+            Class<?> valueType = null;
+            Object[] values = new Object[rows.size()];
+            int[] positions = new int[rows.size()];
+            int count = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                Object value = rows.get(i).get(field);
+                if (value == null) {
+                    continue;
+                }
+                if (!(value instanceof Comparable) || (valueType != null && value.getClass() != valueType)) {
+                    return null;
+                }
+                valueType = value.getClass();
+                values[count] = value;
+                positions[count++] = i;
+            }
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            // stable sort, so ids of equal keys stay ascending
+            Arrays.sort(order, (a, b) -> ((Comparable) values[a]).compareTo(values[b]));
+            Object[] keys = new Object[count];
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = values[order[i]];
+                ids[i] = positions[order[i]];
+            }
+            return new SortedIndex(valueType, keys, ids);
+        }
+
+        boolean accepts(Object bound) {
+            return bound == null || valueType == null || bound.getClass() == valueType;
+        }
+
+        /**
+         * Position of the first key above (or at, when inclusive) the bound
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        int lowerBound(Object bound, boolean inclusive) {
+            if (bound == null) {
+                return 0;
+            }
+            int lo = 0;
+            int hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = ((Comparable) keys[mid]).compareTo(bound);
+                if (c < 0 || (c == 0 && !inclusive)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Position after the last key below (or at, when inclusive) the bound
+         */
+        int upperBound(Object bound, boolean inclusive) {
+            if (bound == null) {
+                return keys.length;
+            }
+            return lowerBound(bound, !inclusive);
+        }
+
+        /**
+         * Row ids of keys[from, to), ascending
+         */
+        int[] ids(int from, int to) {
+            int[] result = Arrays.copyOfRange(ids, from, Math.max(from, to));
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
+
+/**
+ * Index access paths for one table filter. Each indexable condition (the
+ * filter itself, or one condition of a top-level and) is kept together with
+ * the residual filter of the other conditions. At request time the path with
+ * the fewest candidate rows is used and only its residual is evaluated.
+ *
+ * Indexable: equals and in (not case-insensitive) on a hash index; range,
+ * greater-than and less-than on a sorted index whose value class matches
+ * the bounds. Everything else falls back to a scan.
+ */
+class IndexPlan {
+    private final List<IndexedCondition> conditions;
+
+    private IndexPlan(List<IndexedCondition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * Plan for the filter, or null if no condition can use a declared index
+     */
+    static IndexPlan compile(FilterConfig filter, List<IndexConfig> indexes, FilterCompiler filterCompiler) {
+        if (filter == null || indexes == null || indexes.isEmpty()) {
+            return null;
+        }
+        List<IndexedCondition> conditions = new ArrayList<>();
+        if ("and".equalsIgnoreCase(filter.getType()) && filter.getConditions() != null) {
+            List<FilterConfig> children = filter.getConditions();
+            for (int i = 0; i < children.size(); i++) {
+                if (!indexable(children.get(i), indexes)) {
+                    continue;
+                }
+                FilterConfig residual = new FilterConfig();
+                residual.setType("and");
+                List<FilterConfig> others = new ArrayList<>(children);
+                others.remove(i);
+                residual.setConditions(others);
+                conditions.add(new IndexedCondition(children.get(i), filterCompiler.compile(residual)));
+            }
+        } else if (indexable(filter, indexes)) {
+            conditions.add(new IndexedCondition(filter, CompiledFilter.ALWAYS));
+        }
+        return conditions.isEmpty() ? null : new IndexPlan(conditions);
+    }
+
+    private static boolean indexable(FilterConfig condition, List<IndexConfig> indexes) {
+        String type = condition.getType() != null ? condition.getType().toLowerCase() : "none";
+        boolean caseInsensitive = condition.getCaseInsensitive() != null && condition.getCaseInsensitive();
+        String indexType;
+        switch (type) {
+            case "equals":
+            case "in":
+                if (caseInsensitive) {
+                    return false;
+                }
+                indexType = IndexConfig.HASH;
+                break;
+            case "range":
+            case "greater-than":
+            case "less-than":
+                indexType = IndexConfig.SORTED;
+                break;
+            default:
+                return false;
+        }
+        return indexes.stream().anyMatch(index -> index.getField() != null
+            && index.getField().equals(condition.getField())
+            && indexType.equalsIgnoreCase(index.getType()));
+    }
+
+    /**
+     * Matching rows in source order, or null if none of the paths can be
+     * served by the indexes built for these rows
+     */
+    public Stream<Map<String, Object>> filter(IndexedRows rows) {
+        IndexedCondition best = null;
+        int bestCount = Integer.MAX_VALUE;
+        for (IndexedCondition condition : conditions) {
+            int count = condition.estimate(rows);
+            if (count >= 0 && count < bestCount) {
+                best = condition;
+                bestCount = count;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        Predicate<Map<String, Object>> residual = best.residual;
+        return Arrays.stream(best.candidates(rows))
+            .mapToObj(rows::get)
+            .filter(residual);
+    }
+
+    private static final class IndexedCondition {
+        private final FilterConfig condition;
+        private final String type;
+        private final CompiledFilter residual;
+
+        IndexedCondition(FilterConfig condition, CompiledFilter residual) {
+            this.condition = condition;
+            this.type = condition.getType().toLowerCase();
+            this.residual = residual;
+        }
+
+        /**
+         * Candidate row count, or -1 if the rows have no usable index
+         */
+        int estimate(IndexedRows rows) {
+            switch (type) {
+                case "equals": {
+                    IndexedRows.HashIndex index = rows.hashIndex(condition.getField());
+                    return index != null ? index.count(condition.getValue()) : -1;
+                }
+                case "in": {
+                    IndexedRows.HashIndex index = rows.hashIndex(condition.getField());
+                    if (index == null) {
+                        return -1;
+                    }
+                    if (condition.getValues() == null) {
+                        return 0;
+                    }
+                    return new HashSet<>(condition.getValues()).stream().mapToInt(index::count).sum();
+                }
+                default: {
+                    int[] span = span(rows);
+                    return span != null ? span[1] - span[0] : -1;
+                }
+            }
+        }
+
+        int[] candidates(IndexedRows rows) {
+            switch (type) {
+                case "equals":
+                    return rows.hashIndex(condition.getField()).lookup(condition.getValue());
+                case "in": {
+                    if (condition.getValues() == null) {
+                        return new int[0];
+                    }
+                    IndexedRows.HashIndex index = rows.hashIndex(condition.getField());
+                    return new HashSet<>(condition.getValues()).stream()
+                        .flatMapToInt(value -> IntStream.of(index.lookup(value)))
+                        .sorted()
+                        .toArray();
+                }
+                default: {
+                    int[] span = span(rows);
+                    return rows.sortedIndex(condition.getField()).ids(span[0], span[1]);
+                }
+            }
+        }
+
+        /**
+         * [from, to) positions in the sorted index matching the condition
+         */
+        private int[] span(IndexedRows rows) {
+            IndexedRows.SortedIndex index = rows.sortedIndex(condition.getField());
+            if (index == null) {
+                return null;
+            }
+            switch (type) {
+                case "range":
+                    if (!index.accepts(condition.getMinValue()) || !index.accepts(condition.getMaxValue())) {
+                        return null;
+                    }
+                    return new int[] {
+                        index.lowerBound(condition.getMinValue(), true),
+                        index.upperBound(condition.getMaxValue(), true)};
+                case "greater-than":
+                    if (condition.getValue() == null || !index.accepts(condition.getValue())) {
+                        return null;
+                    }
+                    return new int[] {index.lowerBound(condition.getValue(), false), index.upperBound(null, true)};
+                case "less-than":
+                    if (condition.getValue() == null || !index.accepts(condition.getValue())) {
+                        return null;
+                    }
+                    return new int[] {0, index.upperBound(condition.getValue(), false)};
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Micrometer meters of the table hot paths, tagged by table name and source,
+ * "config" for TableConfigProperties tables and "spec" for render specs
+ * (metrics.specs()), whose names may be the same:
+ *
+ *   table.stage            timer per stage (fetch, filter, project, render, pdf, ...)
+ *   table.stage.allocated  bytes allocated by the calling thread per stage
+ *   table.rows             rows in (from the source) and out (after the filter,
+ *                          i.e. rendered)
+ *   table.output           size of rendered output per format
+ *   table.cache            result cache lookups per level, hit or miss
+ *
+ * Meters are created once per table and stage, so recording is a map lookup
+ * plus the meter update. Uses the application's MeterRegistry when there is
+ * one, otherwise an in-memory SimpleMeterRegistry. Timers keep count, total
+ * and max only; with metricsHistograms on they also publish a percentile
+ * histogram for the backend to aggregate. With metricsTracing on and an
+ * ObservationRegistry bean, each stage is also an Observation (trace span).
+ *
+ * Projection has its own stage where it is a pass of its own (e.g. the rows
+ * of a page). Where it runs in the same pass as the filter it is part of the
+ * filter stage, and where it runs inside rendering part of the render stage;
+ * streamed sources are pulled inside the filter pass, so their fetch time is
+ * part of the filter stage too. Allocation of parallel chunks on pool threads
+ * is not counted.
+ */
+@Component
+class TableMetrics {
+    public static final String PROCESS = "process";
+    public static final String FETCH = "fetch";
+    public static final String FILTER = "filter";
+    public static final String PROJECT = "project";
+    public static final String RENDER = "render";
+    public static final String PDF = "pdf";
+    public static final String MERGE = "merge";
+
+    public static final String CONFIG = "config";
+    public static final String SPEC = "spec";
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final MeterRegistry registry;
+    private final ObservationRegistry observations;
+    private final boolean allocation;
+    private final boolean histograms;
+    private final String source;
+    private final Map<String, TableMeters> tables = new ConcurrentHashMap<>();
+    private final TableMetrics specs;
+
+    public TableMetrics(ObjectProvider<MeterRegistry> registry,
+                        ObjectProvider<ObservationRegistry> observations,
+                        TableConfigProperties configProperties) {
+        this.registry = registry.getIfAvailable(SimpleMeterRegistry::new);
+        this.observations = configProperties.isMetricsTracing() ? observations.getIfAvailable() : null;
+        this.allocation = configProperties.isMetricsAllocation() && THREADS != null;
+        this.histograms = configProperties.isMetricsHistograms();
+        this.source = CONFIG;
+        this.specs = new TableMetrics(this);
+    }
+
+    private TableMetrics(TableMetrics configs) {
+        this.registry = configs.registry;
+        this.observations = configs.observations;
+        this.allocation = configs.allocation;
+        this.histograms = configs.histograms;
+        this.source = SPEC;
+        this.specs = this;
+    }
+
+    /**
+     * Meters of render specs (TableRenderConfig), tagged source=spec
+     */
+    public TableMetrics specs() { return specs; }
+
+    /**
+     * Starts timing a stage; close it on the same thread
+     */
+    public Stage stage(String configName, String stage) {
+        return new Stage(meters(configName), stage);
+    }
+
+    public void rowsIn(String configName, long rows) {
+        meters(configName).rowsIn.increment(rows);
+    }
+
+    public void rowsOut(String configName, long rows) {
+        meters(configName).rowsOut.increment(rows);
+    }
+
+    /**
+     * Rendered size: characters for html, bytes for pdf
+     */
+    public void output(String configName, String format, long size) {
+        meters(configName).output(format).record(size);
+    }
+
+    public void cacheAccess(String configName, String level, boolean hit) {
+        meters(configName).cache(level, hit).increment();
+    }
+
+    public MeterRegistry getRegistry() { return registry; }
+
+    private TableMeters meters(String configName) {
+        TableMeters meters = tables.get(configName);
+        return meters != null ? meters : tables.computeIfAbsent(configName, TableMeters::new);
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One running stage; close() records its time and allocation and ends its span
+     */
+    final class Stage implements AutoCloseable {
+        private final TableMeters meters;
+        private final String stage;
+        private final long start;
+        private final long allocationStart;
+        private final Observation observation;
+        private final Observation.Scope scope;
+
+        private Stage(TableMeters meters, String stage) {
+            this.meters = meters;
+            this.stage = stage;
+            if (observations != null) {
+                observation = Observation.createNotStarted("table." + stage, observations)
+                    .lowCardinalityKeyValue("table", meters.table)
+                    .lowCardinalityKeyValue("source", source)
+                    .start();
+                scope = observation.openScope();
+            } else {
+                observation = null;
+                scope = null;
+            }
+            this.allocationStart = allocation ? allocatedBytes() : -1;
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            meters.timer(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (allocationStart >= 0) {
+                meters.allocated(stage).record(allocatedBytes() - allocationStart);
+            }
+            if (observation != null) {
+                scope.close();
+                observation.stop();
+            }
+        }
+    }
+
+    /**
+     * Counts rows passing through a stream, e.g. peek(counter) before the filter
+     */
+    static final class RowCounter implements Consumer<Object> {
+        private long count;
+
+        @Override
+        public void accept(Object row) {
+            count++;
+        }
+
+        public long getCount() { return count; }
+
+        /**
+         * rows, counting each row taken from it
+         */
+        public <T> Iterator<T> counted(Iterator<T> rows) {
+            return new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return rows.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    T row = rows.next();
+                    count++;
+                    return row;
+                }
+            };
+        }
+    }
+
+    private final class TableMeters {
+        private final String table;
+        private final Counter rowsIn;
+        private final Counter rowsOut;
+        private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+        private final Map<String, DistributionSummary> allocated = new ConcurrentHashMap<>();
+        private final Map<String, DistributionSummary> outputs = new ConcurrentHashMap<>();
+        private final Map<String, Counter> cacheHits = new ConcurrentHashMap<>();
+        private final Map<String, Counter> cacheMisses = new ConcurrentHashMap<>();
+
+        TableMeters(String table) {
+            this.table = table;
+            this.rowsIn = rows("in");
+            this.rowsOut = rows("out");
+        }
+
+        private Counter rows(String direction) {
+            return Counter.builder("table.rows")
+                .tag("table", table)
+                .tag("source", source)
+                .tag("direction", direction)
+                .register(registry);
+        }
+
+        Timer timer(String stage) {
+            Timer timer = timers.get(stage);
+            return timer != null ? timer : timers.computeIfAbsent(stage, s -> Timer.builder("table.stage")
+                .tag("table", table)
+                .tag("source", source)
+                .tag("stage", s)
+                .publishPercentileHistogram(histograms)
+                .register(registry));
+        }
+
+        DistributionSummary allocated(String stage) {
+            DistributionSummary summary = allocated.get(stage);
+            return summary != null ? summary : allocated.computeIfAbsent(stage, s ->
+                DistributionSummary.builder("table.stage.allocated")
+                    .baseUnit("bytes")
+                    .tag("table", table)
+                    .tag("source", source)
+                    .tag("stage", s)
+                    .register(registry));
+        }
+
+        DistributionSummary output(String format) {
+            DistributionSummary summary = outputs.get(format);
+            return summary != null ? summary : outputs.computeIfAbsent(format, f ->
+                DistributionSummary.builder("table.output")
+                    .tag("table", table)
+                    .tag("source", source)
+                    .tag("format", f)
+                    .register(registry));
+        }
+
+        Counter cache(String level, boolean hit) {
+            Map<String, Counter> counters = hit ? cacheHits : cacheMisses;
+            Counter counter = counters.get(level);
+            return counter != null ? counter : counters.computeIfAbsent(level, l -> Counter.builder("table.cache")
+                .tag("table", table)
+                .tag("source", source)
+                .tag("level", l)
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Per-table parallel execution settings from YAML
+ */
+class ParallelConfig {
+    private boolean enabled = true;
+    private int threshold = 50_000;
+    private int chunkSize = 8_192;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    /**
+     * Sources with fewer rows stay sequential
+     */
+    public int getThreshold() { return threshold; }
+    public void setThreshold(int threshold) { this.threshold = threshold; }
+
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+
+    public boolean appliesTo(int rowCount) {
+        return enabled && rowCount >= threshold;
+    }
+}
+
+/**
+ * Runs filter and projection over chunks of a row list on a dedicated
+ * ForkJoinPool, so large tables do not compete with the web tier for the
+ * common pool. Chunk results are concatenated in source order.
+ */
+@Component
+class TablePipelineExecutor {
+    private final ForkJoinPool pool;
+
+    public TablePipelineExecutor(TableConfigProperties configProperties) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(configProperties.getParallelism(), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("table-pipeline-" + threadCount.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Filters and projects rows chunk by chunk. Each chunk asks filterFactory
+     * for its own predicate, so non-thread-safe filters stay confined to one
+     * worker.
+     */
+    public <R> List<R> filterAndProject(
+            List<Map<String, Object>> rows,
+            Supplier<Predicate<Map<String, Object>>> filterFactory,
+            Function<Map<String, Object>, R> projector,
+            int chunkSize) {
+        return filterAndProject(rows, filterFactory, projector, chunkSize, null);
+    }
+
+    /**
+     * Same as above, also feeding matching rows to a per-chunk copy of the
+     * aggregator; chunk aggregates are merged into aggregator in chunk order
+     */
+    public <R> List<R> filterAndProject(
+            List<Map<String, Object>> rows,
+            Supplier<Predicate<Map<String, Object>>> filterFactory,
+            Function<Map<String, Object>, R> projector,
+            int chunkSize,
+            Aggregator aggregator) {
+
+        List<Aggregator> chunkAggregators = new ArrayList<>();
+        List<Callable<List<R>>> tasks = new ArrayList<>();
+        for (int start = 0; start < rows.size(); start += chunkSize) {
+            List<Map<String, Object>> chunk = rows.subList(start, Math.min(rows.size(), start + chunkSize));
+            Aggregator chunkAggregator = aggregator != null ? aggregator.newEmpty() : null;
+            chunkAggregators.add(chunkAggregator);
+            tasks.add(() -> {
+                Predicate<Map<String, Object>> filter = filterFactory.get();
+                List<R> result = new ArrayList<>();
+                for (Map<String, Object> row : chunk) {
+                    if (filter.test(row)) {
+                        if (chunkAggregator != null) {
+                            chunkAggregator.accept(row);
+                        }
+                        result.add(projector.apply(row));
+                    }
+                }
+                return result;
+            });
+        }
+
+        List<R> combined = new ArrayList<>();
+        for (Future<List<R>> future : pool.invokeAll(tasks)) {
+            combined.addAll(join(future));
+        }
+        if (aggregator != null) {
+            chunkAggregators.forEach(aggregator::merge);
+        }
+        return combined;
+    }
+
+    /**
+     * Runs independent tasks on the pipeline pool and hands their results to
+     * handler in task order, each once it and every task before it are done.
+     * At most twice the pool's parallelism tasks run ahead of the handler, so
+     * results holding resources (e.g. pooled buffers) stay bounded. When a
+     * task or the handler fails, no further tasks are started and the results
+     * of those already running are passed to discard once they finish.
+     */
+    public <T> void forEachOrdered(List<Callable<T>> tasks, ResultHandler<T> handler, Consumer<T> discard)
+            throws Exception {
+        int window = 2 * pool.getParallelism();
+        Deque<Future<T>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < tasks.size() || !inFlight.isEmpty()) {
+                while (next < tasks.size() && inFlight.size() < window) {
+                    inFlight.addLast(pool.submit(tasks.get(next++)));
+                }
+                T result = join(inFlight.peekFirst());
+                inFlight.removeFirst();
+                handler.accept(result);
+            }
+        } finally {
+            // only left over after a failure
+            for (Future<T> future : inFlight) {
+                try {
+                    discard.accept(future.get());
+                } catch (ExecutionException e) {
+                    // a failed task has no result to discard
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives results of forEachOrdered, e.g. writes them out
+     */
+    interface ResultHandler<T> {
+        void accept(T result) throws Exception;
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for table pipeline");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException("Table pipeline task failed", cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
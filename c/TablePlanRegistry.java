@@ -0,0 +1,376 @@
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable, precompiled form of one TableConfig: resolved data source
+ * handles, compiled filter/projection and column schema
+ */
+class TablePlan {
+    private final String configName;
+    private final TableConfig config;
+    private final ReactiveDataSourceService dataSource;
+    private final MethodHandle versionHandle;
+    private final List<ColumnDefinition> columns;
+    private final GeneratedRowPlan rowPlan;
+    private final Supplier<Predicate<Map<String, Object>>> parallelFilter;
+    private final ColumnarFilterPlan columnarPlan;
+    private final IndexPlan indexPlan;
+    private final Aggregator aggregator;
+    private final DeltaDataSourceService deltaSource;
+
+    TablePlan(String configName,
+              TableConfig config,
+              ReactiveDataSourceService dataSource,
+              MethodHandle versionHandle,
+              List<ColumnDefinition> columns,
+              GeneratedRowPlan rowPlan,
+              Supplier<Predicate<Map<String, Object>>> parallelFilter,
+              ColumnarFilterPlan columnarPlan,
+              IndexPlan indexPlan,
+              Aggregator aggregator,
+              DeltaDataSourceService deltaSource) {
+        this.configName = configName;
+        this.config = config;
+        this.dataSource = dataSource;
+        this.versionHandle = versionHandle;
+        this.columns = columns;
+        this.rowPlan = rowPlan;
+        this.parallelFilter = parallelFilter;
+        this.columnarPlan = columnarPlan;
+        this.indexPlan = indexPlan;
+        this.aggregator = aggregator;
+        this.deltaSource = deltaSource;
+    }
+
+    public String getConfigName() { return configName; }
+    public TableConfig getConfig() { return config; }
+
+    /**
+     * Owner of the source cache level: the data source bean method, so configs
+     * reading the same method share its cached rows and indexes
+     */
+    public String getSourceName() { return sourceName(configName, config); }
+
+    static String sourceName(String configName, TableConfig config) {
+        DataSourceConfig dataSource = config.getDataSource();
+        if (dataSource == null) {
+            return configName;
+        }
+        return "source:" + dataSource.getBeanName() + "." + dataSource.getMethodName();
+    }
+    public ReactiveDataSourceService getDataSource() { return dataSource; }
+    public List<ColumnDefinition> getColumns() { return columns; }
+    public GeneratedRowPlan getRowPlan() { return rowPlan; }
+
+    /**
+     * Filter for one parallel chunk; shared when the filter is stateless,
+     * built per chunk when it contains custom predicates
+     */
+    public Supplier<Predicate<Map<String, Object>>> getParallelFilter() { return parallelFilter; }
+    public ColumnarFilterPlan getColumnarPlan() { return columnarPlan; }
+
+    /**
+     * Index access paths over the cached source, or null when the table
+     * declares no index the filter can use
+     */
+    public IndexPlan getIndexPlan() { return indexPlan; }
+
+    /**
+     * Fresh aggregator for one pass, or null when the table has no aggregations
+     */
+    public Aggregator newAggregator() {
+        return aggregator != null ? aggregator.newEmpty() : null;
+    }
+
+    /**
+     * Source of incremental changes when the config sets primaryKey, else null
+     */
+    public DeltaDataSourceService getDeltaSource() { return deltaSource; }
+
+    /**
+     * Current data version from dataSource.versionMethodName, or null
+     */
+    public Object dataVersion() {
+        if (versionHandle == null) {
+            return null;
+        }
+        try {
+            return (Object) versionHandle.invokeExact();
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to read data version for table " + configName, e);
+        }
+    }
+}
+
+/**
+ * Compiles every entry of TableConfigProperties.tables into a TablePlan once
+ * the context is refreshed, so requests run without reflection or filter
+ * compilation. A plan is rebuilt when its TableConfig instance is replaced,
+ * which happens when configuration properties are re-bound on reload.
+ *
+ * A config that fails to compile does not stop the others or the application:
+ * the failure is logged at refresh and thrown to every request for that table
+ * until its config is replaced.
+ */
+@Component
+class TablePlanRegistry {
+    private static final Logger log = LoggerFactory.getLogger(TablePlanRegistry.class);
+
+    private final ApplicationContext context;
+    private final FilterCompiler filterCompiler;
+    private final RowPlanGenerator rowPlanGenerator;
+    private final ColumnarFilterCompiler columnarFilterCompiler;
+    private final TableConfigProperties configProperties;
+    private final Map<String, TablePlan> plans = new ConcurrentHashMap<>();
+    private final Map<String, CompileFailure> failures = new ConcurrentHashMap<>();
+
+    public TablePlanRegistry(
+            ApplicationContext context,
+            FilterCompiler filterCompiler,
+            RowPlanGenerator rowPlanGenerator,
+            ColumnarFilterCompiler columnarFilterCompiler,
+            TableConfigProperties configProperties) {
+        this.context = context;
+        this.filterCompiler = filterCompiler;
+        this.rowPlanGenerator = rowPlanGenerator;
+        this.columnarFilterCompiler = columnarFilterCompiler;
+        this.configProperties = configProperties;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void refresh() {
+        plans.keySet().retainAll(configProperties.getTables().keySet());
+        failures.keySet().retainAll(configProperties.getTables().keySet());
+        for (String configName : configProperties.getTables().keySet()) {
+            try {
+                plan(configName);
+            } catch (RuntimeException e) {
+                log.error("Table config {} failed to compile, its requests will fail", configName, e);
+            }
+        }
+    }
+
+    /**
+     * Plan for a configuration, recompiled if the configuration was reloaded
+     */
+    public TablePlan plan(String configName) {
+        TableConfig config = configProperties.getTables().get(configName);
+        if (config == null) {
+            throw new IllegalArgumentException("Table config not found: " + configName);
+        }
+        TablePlan plan = plans.get(configName);
+        if (plan == null || plan.getConfig() != config) {
+            CompileFailure failure = failures.get(configName);
+            if (failure != null && failure.config == config) {
+                throw new IllegalStateException("Table config " + configName + " failed to compile", failure.cause);
+            }
+            try {
+                plan = compile(configName, config);
+            } catch (RuntimeException e) {
+                failures.put(configName, new CompileFailure(config, e));
+                throw e;
+            }
+            failures.remove(configName);
+            plans.put(configName, plan);
+        }
+        return plan;
+    }
+
+    private static final class CompileFailure {
+        final TableConfig config;
+        final RuntimeException cause;
+
+        CompileFailure(TableConfig config, RuntimeException cause) {
+            this.config = config;
+            this.cause = cause;
+        }
+    }
+
+    private TablePlan compile(String configName, TableConfig config) {
+        DataSourceConfig dataSourceConfig = config.getDataSource();
+        Object bean = context.getBean(dataSourceConfig.getBeanName());
+        MethodHandle dataHandle = resolve(bean, dataSourceConfig.getMethodName(), dataSourceConfig);
+        MethodHandle versionHandle = dataSourceConfig.getVersionMethodName() != null
+            ? resolve(bean, dataSourceConfig.getVersionMethodName(), dataSourceConfig)
+            : null;
+
+        List<ColumnDefinition> columns = config.getColumns().stream()
+            .map(c -> new ColumnDefinition(c.getFieldName(), c.getLabel(), c.compileFormatter(Locale.getDefault())))
+            .collect(Collectors.toUnmodifiableList());
+
+        GeneratedRowPlan rowPlan = null;
+        if (configProperties.isCodegen()) {
+            rowPlan = rowPlanGenerator.generate(configName, config.getFilter(), config.getColumns()).orElse(null);
+        }
+        if (rowPlan == null) {
+            rowPlan = new GeneratedRowPlan(filterCompiler.compile(config.getFilter()),
+                record -> extractColumns(record, columns));
+        }
+
+        Predicate<Map<String, Object>> sharedFilter = rowPlan.getFilter();
+        Supplier<Predicate<Map<String, Object>>> parallelFilter = FilterCompiler.hasCustom(config.getFilter())
+            ? () -> filterCompiler.compileForThread(config.getFilter())
+            : () -> sharedFilter;
+
+        ColumnarFilterPlan columnarPlan = config.isColumnar()
+            ? columnarFilterCompiler.plan(config.getFilter())
+            : null;
+
+        DeltaDataSourceService deltaSource = null;
+        if (config.getPrimaryKey() != null) {
+            if (!(bean instanceof DeltaDataSourceService)) {
+                throw new IllegalStateException("Table " + configName + " sets primaryKey but bean " +
+                    dataSourceConfig.getBeanName() + " does not implement DeltaDataSourceService");
+            }
+            deltaSource = (DeltaDataSourceService) bean;
+        }
+
+        // indexes live with the cached source list, so they need cache level "source"
+        IndexPlan indexPlan = config.getCache() != null && config.getCache().caches(TableResultCache.SOURCE)
+            ? IndexPlan.compile(config.getFilter(), config.getIndexes(), filterCompiler)
+            : null;
+
+        boolean publisher = returnsPublisher(bean, dataSourceConfig.getMethodName());
+        return new TablePlan(configName, config, dataSource(dataHandle, dataSourceConfig, publisher),
+            versionHandle, columns, rowPlan, parallelFilter, columnarPlan, indexPlan,
+            config.getAggregations() != null ? new Aggregator(config.getAggregations()) : null,
+            deltaSource);
+    }
+
+    private static MethodHandle resolve(Object bean, String methodName, DataSourceConfig config) {
+        try {
+            Method method = bean.getClass().getMethod(methodName);
+            // beans are often package-private classes; method.invoke reached them, so must the handle
+            method.trySetAccessible();
+            return MethodHandles.lookup().unreflect(method)
+                .bindTo(bean)
+                .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Method not found: " + methodName +
+                " on bean: " + config.getBeanName(), e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Method not accessible: " + methodName +
+                " on bean: " + config.getBeanName(), e);
+        }
+    }
+
+    private static boolean returnsPublisher(Object bean, String methodName) {
+        try {
+            return Publisher.class.isAssignableFrom(bean.getClass().getMethod(methodName).getReturnType());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Data source methods may return a List, a Stream, an Iterator, any
+     * Iterable or a Publisher of rows; non-list results are consumed lazily.
+     * Blocking methods are published from the bounded elastic scheduler.
+     */
+    private static ReactiveDataSourceService dataSource(MethodHandle handle, DataSourceConfig config,
+                                                        boolean publisher) {
+        return new ReactiveDataSourceService() {
+            @Override
+            public List<Map<String, Object>> fetchData() {
+                Object result = invoke(handle, config);
+                if (result instanceof List) {
+                    @SuppressWarnings("unchecked")
+                    List<Map<String, Object>> rows = (List<Map<String, Object>>) result;
+                    return rows;
+                }
+                try (Stream<Map<String, Object>> rows = toStream(result, config)) {
+                    return rows.collect(Collectors.toList());
+                }
+            }
+
+            @Override
+            public Stream<Map<String, Object>> streamData() {
+                return toStream(invoke(handle, config), config);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Publisher<Map<String, Object>> publishData() {
+                if (publisher) {
+                    return Flux.defer(() -> {
+                        Object result = invoke(handle, config);
+                        return result != null ? Flux.from((Publisher<Map<String, Object>>) result) : Flux.empty();
+                    });
+                }
+                return Flux.<Map<String, Object>>fromStream(() -> toStream(invoke(handle, config), config))
+                    .subscribeOn(Schedulers.boundedElastic());
+            }
+        };
+    }
+
+    private static Object invoke(MethodHandle handle, DataSourceConfig config) {
+        try {
+            return (Object) handle.invokeExact();
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to fetch data from " +
+                config.getBeanName() + "." + config.getMethodName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Stream<Map<String, Object>> toStream(Object result, DataSourceConfig config) {
+        if (result == null) {
+            return Stream.empty();
+        }
+        if (result instanceof Stream) {
+            return (Stream<Map<String, Object>>) result;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<Map<String, Object>>) result).stream();
+        }
+        if (result instanceof Iterable) {
+            return StreamSupport.stream(((Iterable<Map<String, Object>>) result).spliterator(), false);
+        }
+        if (result instanceof Iterator) {
+            Iterator<Map<String, Object>> iterator = (Iterator<Map<String, Object>>) result;
+            return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+        }
+        if (result instanceof Publisher) {
+            return Flux.from((Publisher<Map<String, Object>>) result).toStream();
+        }
+        if (result instanceof DataSourceService) {
+            return ((DataSourceService) result).streamData();
+        }
+        throw new IllegalStateException("Unsupported data source result " + result.getClass().getName() +
+            " from " + config.getBeanName() + "." + config.getMethodName());
+    }
+
+    static Map<String, Object> extractColumns(
+            Map<String, Object> record,
+            List<ColumnDefinition> columnDefinitions) {
+
+        Map<String, Object> extractedData = new LinkedHashMap<>();
+
+        for (ColumnDefinition colDef : columnDefinitions) {
+            Object value = record.get(colDef.getFieldName());
+            extractedData.put(colDef.getFieldName(), value != null ? value : "");
+        }
+
+        return extractedData;
+    }
+}
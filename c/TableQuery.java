@@ -0,0 +1,491 @@
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Paging and ordering of a table request. A TableConfig/TableSpec may carry
+ * one as defaults (YAML key "query"); request values override them.
+ *
+ * page is zero based; without pageSize the whole result is returned.
+ */
+class TableQuery {
+    public static final String ASC = "asc";
+    public static final String DESC = "desc";
+
+    private Integer page;
+    private Integer pageSize;
+    private String sortBy;
+    private String sortDirection;
+
+    public TableQuery() {
+    }
+
+    public TableQuery(Integer page, Integer pageSize, String sortBy, String sortDirection) {
+        this.page = page;
+        this.pageSize = pageSize;
+        this.sortBy = sortBy;
+        this.sortDirection = sortDirection;
+    }
+
+    public Integer getPage() { return page; }
+    public void setPage(Integer page) { this.page = page; }
+
+    public Integer getPageSize() { return pageSize; }
+    public void setPageSize(Integer pageSize) { this.pageSize = pageSize; }
+
+    public String getSortBy() { return sortBy; }
+    public void setSortBy(String sortBy) { this.sortBy = sortBy; }
+
+    public String getSortDirection() { return sortDirection; }
+    public void setSortDirection(String sortDirection) { this.sortDirection = sortDirection; }
+
+    /**
+     * This query with unset values taken from defaults
+     */
+    public TableQuery withDefaults(TableQuery defaults) {
+        if (defaults == null) {
+            return this;
+        }
+        return new TableQuery(
+            page != null ? page : defaults.page,
+            pageSize != null ? pageSize : defaults.pageSize,
+            sortBy != null ? sortBy : defaults.sortBy,
+            sortDirection != null ? sortDirection : defaults.sortDirection);
+    }
+
+    public boolean isPaged() {
+        return pageSize != null && pageSize > 0;
+    }
+
+    public boolean isSorted() {
+        return sortBy != null && !sortBy.isEmpty();
+    }
+
+    public long offset() {
+        return isPaged() && page != null ? (long) Math.max(0, page) * pageSize : 0;
+    }
+
+    public int limit() {
+        return isPaged() ? pageSize : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TableQuery)) return false;
+        TableQuery other = (TableQuery) o;
+        return Objects.equals(page, other.page)
+            && Objects.equals(pageSize, other.pageSize)
+            && Objects.equals(sortBy, other.sortBy)
+            && Objects.equals(sortDirection, other.sortDirection);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(page, pageSize, sortBy, sortDirection);
+    }
+
+    /**
+     * Orders rows by sortBy; nulls last in either direction
+     */
+    public Comparator<Map<String, Object>> comparator() {
+        String field = sortBy;
+        Comparator<Object> values = DESC.equalsIgnoreCase(sortDirection)
+            ? Comparator.nullsLast((a, b) -> compareValues(b, a))
+            : Comparator.nullsLast(TableQuery::compareValues);
+        return (a, b) -> values.compare(a.get(field), b.get(field));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+            }
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long
+            || value instanceof Short || value instanceof Byte;
+    }
+}
+
+/**
+ * One page of a table together with the number of rows that matched the filter
+ */
+class PagedTableData extends TableData {
+    private final long totalCount;
+    private final TableQuery query;
+
+    public PagedTableData(List<ColumnDefinition> columns, List<Map<String, Object>> rows,
+                          long totalCount, TableQuery query) {
+        super(columns, rows);
+        this.totalCount = totalCount;
+        this.query = query;
+    }
+
+    public long getTotalCount() { return totalCount; }
+    public TableQuery getQuery() { return query; }
+
+    public long getPageCount() {
+        return query.isPaged() ? (totalCount + query.getPageSize() - 1) / query.getPageSize() : 1;
+    }
+}
+
+/**
+ * Rows of one query window and the total number of rows they were cut from
+ */
+class RowWindow {
+    private final List<Map<String, Object>> rows;
+    private final long totalCount;
+
+    RowWindow(List<Map<String, Object>> rows, long totalCount) {
+        this.rows = rows;
+        this.totalCount = totalCount;
+    }
+
+    public List<Map<String, Object>> getRows() { return rows; }
+    public long getTotalCount() { return totalCount; }
+}
+
+/**
+ * Cuts a query window out of a filtered row iterator.
+ *
+ * Paged requests keep only the best offset+limit rows in a bounded heap, so
+ * memory is O(offset + limit) and there is no full sort. Unpaged sorts run
+ * an external merge sort: sorted runs of at most sortSpillRows rows are
+ * spilled to temp files, in OffHeapRows' compact row encoding, and merged
+ * back lazily. Callers that only pass the rows on should iterate sort()
+ * rather than select(), which collects them.
+ */
+@Component
+class RowSorter {
+    private final TableConfigProperties configProperties;
+
+    public RowSorter(TableConfigProperties configProperties) {
+        this.configProperties = configProperties;
+    }
+
+    public RowWindow select(Iterator<Map<String, Object>> rows, TableQuery query) {
+        if (query.isSorted() && query.isPaged()) {
+            return topN(rows, query);
+        }
+        if (query.isSorted()) {
+            List<Map<String, Object>> sorted = new ArrayList<>();
+            try (CloseableRowIterator it = sort(rows, query.comparator())) {
+                it.forEachRemaining(sorted::add);
+            }
+            return new RowWindow(sorted, sorted.size());
+        }
+        return slice(rows, query.offset(), query.limit());
+    }
+
+    /**
+     * Rows offset..offset+limit in source order, counting the rest without keeping them
+     */
+    private RowWindow slice(Iterator<Map<String, Object>> rows, long offset, int limit) {
+        List<Map<String, Object>> window = new ArrayList<>();
+        long count = 0;
+        while (rows.hasNext()) {
+            Map<String, Object> row = rows.next();
+            if (count >= offset && count - offset < limit) {
+                window.add(row);
+            }
+            count++;
+        }
+        return new RowWindow(window, count);
+    }
+
+    private RowWindow topN(Iterator<Map<String, Object>> rows, TableQuery query) {
+        long bound = query.offset() + query.limit();
+        if (bound > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Page out of range: " + query.getPage());
+        }
+        int capacity = (int) bound;
+
+        // ties keep source order, so pages are stable across requests
+        Comparator<Map<String, Object>> rowOrder = query.comparator();
+        Comparator<Ranked> order = (a, b) -> {
+            int c = rowOrder.compare(a.row, b.row);
+            return c != 0 ? c : Long.compare(a.sequence, b.sequence);
+        };
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(Math.min(capacity, 1024) + 1, order.reversed());
+
+        long count = 0;
+        while (rows.hasNext()) {
+            Ranked ranked = new Ranked(rows.next(), count++);
+            if (heap.size() < capacity) {
+                heap.add(ranked);
+            } else if (order.compare(ranked, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(ranked);
+            }
+        }
+
+        Ranked[] best = heap.toArray(new Ranked[0]);
+        Arrays.sort(best, order);
+        List<Map<String, Object>> window = new ArrayList<>();
+        for (int i = (int) query.offset(); i < best.length; i++) {
+            window.add(best[i].row);
+        }
+        return new RowWindow(window, count);
+    }
+
+    /**
+     * Sorted view of rows; runs larger than sortSpillRows are spilled to disk.
+     * Values that are not Serializable cannot be spilled; from the first run
+     * holding one on, the rows stay in memory, as OffHeapRows.Writer does.
+     * The iterator must be closed to delete the spill files.
+     */
+    public CloseableRowIterator sort(Iterator<Map<String, Object>> rows,
+                                     Comparator<Map<String, Object>> comparator) {
+        int runSize = Math.max(1, configProperties.getSortSpillRows());
+        // one encoder for all runs, so they share its field names
+        OffHeapRows.RowEncoder encoder = new OffHeapRows.RowEncoder();
+        List<Path> runs = new ArrayList<>();
+        List<Map<String, Object>> buffer = new ArrayList<>();
+        boolean spilling = true;
+        try {
+            while (rows.hasNext()) {
+                buffer.add(rows.next());
+                if (spilling && buffer.size() >= runSize) {
+                    buffer.sort(comparator);
+                    spilling = spill(buffer, encoder, runs);
+                }
+            }
+            buffer.sort(comparator);
+            if (runs.isEmpty()) {
+                return new CloseableRowIterator(buffer.iterator(), List.of());
+            }
+            if (spilling && !buffer.isEmpty()) {
+                spill(buffer, encoder, runs);
+            }
+            return merge(runs, buffer, encoder.fields(), comparator);
+        } catch (IOException e) {
+            runs.forEach(RowSorter::delete);
+            throw new UncheckedIOException("Failed to spill sort run", e);
+        } catch (RuntimeException e) {
+            runs.forEach(RowSorter::delete);
+            throw e;
+        }
+    }
+
+    /**
+     * Spills the sorted buffer as a new run and clears it; false, leaving the
+     * buffer as it is, when one of its values cannot be encoded
+     */
+    private static boolean spill(List<Map<String, Object>> buffer, OffHeapRows.RowEncoder encoder,
+                                 List<Path> runs) throws IOException {
+        try {
+            runs.add(spill(buffer, encoder));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        buffer.clear();
+        return true;
+    }
+
+    /**
+     * Row count, then per row its encoded length and bytes
+     */
+    private static Path spill(List<Map<String, Object>> rows, OffHeapRows.RowEncoder encoder) throws IOException {
+        Path file = Files.createTempFile("table-sort-", ".run");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            out.writeInt(rows.size());
+            for (Map<String, Object> row : rows) {
+                encoder.encode(row);
+                out.writeInt(encoder.length());
+                out.write(encoder.bytes(), 0, encoder.length());
+            }
+        } catch (IOException | RuntimeException e) {
+            delete(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Merges the spilled runs with the rows kept in memory, which come after
+     * all of them in input order
+     */
+    private static CloseableRowIterator merge(List<Path> runs, List<Map<String, Object>> kept, String[] fields,
+                                              Comparator<Map<String, Object>> comparator) throws IOException {
+        List<Run> readers = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                readers.add(new RunReader(run, fields));
+            }
+        } catch (IOException e) {
+            readers.forEach(Run::close);
+            runs.forEach(RowSorter::delete);
+            throw e;
+        }
+        if (!kept.isEmpty()) {
+            readers.add(new HeapRun(kept.iterator()));
+        }
+
+        // equal rows come from the earlier run first, which keeps the sort stable
+        PriorityQueue<Run> heads = new PriorityQueue<>((a, b) -> {
+            int c = comparator.compare(a.head, b.head);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+        for (int i = 0; i < readers.size(); i++) {
+            Run reader = readers.get(i);
+            reader.index = i;
+            if (reader.advance()) {
+                heads.add(reader);
+            }
+        }
+
+        Iterator<Map<String, Object>> merged = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                Run reader = heads.poll();
+                if (reader == null) {
+                    throw new NoSuchElementException();
+                }
+                Map<String, Object> row = reader.head;
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+                return row;
+            }
+        };
+        return new CloseableRowIterator(merged, readers);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // temp directory cleanup will pick it up
+        }
+    }
+
+    private static class Ranked {
+        final Map<String, Object> row;
+        final long sequence;
+
+        Ranked(Map<String, Object> row, long sequence) {
+            this.row = row;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * One sorted run being merged; head is its current row
+     */
+    private abstract static class Run {
+        int index;
+        Map<String, Object> head;
+
+        abstract boolean advance();
+
+        void close() {
+        }
+    }
+
+    private static class HeapRun extends Run {
+        private final Iterator<Map<String, Object>> rows;
+
+        HeapRun(Iterator<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        boolean advance() {
+            head = rows.hasNext() ? rows.next() : null;
+            return head != null;
+        }
+    }
+
+    private static class RunReader extends Run {
+        private final Path file;
+        private final String[] fields;
+        private final DataInputStream in;
+        private byte[] bytes = new byte[256];
+        private int remaining;
+
+        RunReader(Path file, String[] fields) throws IOException {
+            this.file = file;
+            this.fields = fields;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+            this.remaining = in.readInt();
+        }
+
+        @Override
+        boolean advance() {
+            if (remaining == 0) {
+                head = null;
+                close();
+                return false;
+            }
+            try {
+                int length = in.readInt();
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                in.readFully(bytes, 0, length);
+                head = OffHeapRows.decode(ByteBuffer.wrap(bytes), 0, fields);
+                remaining--;
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read sort run " + file, e);
+            }
+        }
+
+        @Override
+        void close() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // read-only stream, nothing to flush
+            }
+            delete(file);
+        }
+    }
+
+    /**
+     * Sorted rows that must be closed to release spilled runs
+     */
+    static class CloseableRowIterator implements Iterator<Map<String, Object>>, AutoCloseable {
+        private final Iterator<Map<String, Object>> rows;
+        private final List<Run> readers;
+
+        private CloseableRowIterator(Iterator<Map<String, Object>> rows, List<Run> readers) {
+            this.rows = rows;
+            this.readers = readers;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rows.hasNext();
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            return rows.next();
+        }
+
+        @Override
+        public void close() {
+            readers.forEach(Run::close);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-table cache settings from YAML
+ *
+ * level: what is cached
+ *   source   - rows returned by the data source (weight = rows)
+ *   filtered - filtered and projected TableData (weight = rows)
+ *   html     - rendered table HTML (weight = chars)
+ *   pdf      - rendered PDF bytes (weight = bytes)
+ */
+class CacheConfig {
+    private boolean enabled = true;
+    private String level = "filtered";
+    private Duration ttl = Duration.ofMinutes(5);
+    private long maxWeight = 1_000_000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getLevel() { return level; }
+    public void setLevel(String level) { this.level = level; }
+
+    public Duration getTtl() { return ttl; }
+    public void setTtl(Duration ttl) { this.ttl = ttl; }
+
+    public long getMaxWeight() { return maxWeight; }
+    public void setMaxWeight(long maxWeight) { this.maxWeight = maxWeight; }
+
+    public boolean caches(String level) {
+        return enabled && this.level != null && this.level.equalsIgnoreCase(level);
+    }
+}
+
+/**
+ * Result cache for table configs, keyed by config name and data-source version.
+ * The source level is owned by the data source instead (TablePlan.getSourceName()),
+ * so configs reading the same bean method share one copy of its rows.
+ *
+ * Render specs use specs(), a cache of its own, so a spec and a config of
+ * the same name never share entries; its accesses are counted with source=spec.
+ *
+ * Each owner/level pair gets its own Caffeine cache (W-TinyLFU eviction,
+ * bounded by the configured weight and TTL). Loading goes through
+ * Cache.get, so concurrent misses for the same key share one load.
+ *
+ * Like the plan registries, a cache is rebuilt when it is asked for with a
+ * different CacheConfig instance (e.g. after the properties were rebound),
+ * but only if that instance's ttl or maxWeight differ from what the cache
+ * was built with. Configs sharing a source cache therefore keep one cache as
+ * long as they agree on those settings; configs that disagree replace each
+ * other's cache and should be given the same settings.
+ *
+ * An entry heavier than maxWeight is evicted as soon as it is loaded, so
+ * every request misses; this is logged once per cache.
+ */
+@Component
+class TableResultCache {
+    public static final String SOURCE = "source";
+    public static final String FILTERED = "filtered";
+    public static final String HTML = "html";
+    public static final String PDF = "pdf";
+
+    private static final Logger log = LoggerFactory.getLogger(TableResultCache.class);
+    private static final Object NO_VERSION = new Object();
+
+    private final Map<CacheKey, BuiltCache> caches;
+    private final TableMetrics metrics;
+    private final TableResultCache specs;
+
+    public TableResultCache(TableMetrics metrics) {
+        this.caches = new ConcurrentHashMap<>();
+        this.metrics = metrics;
+        this.specs = new TableResultCache(this);
+    }
+
+    private TableResultCache(TableResultCache configs) {
+        this.caches = new ConcurrentHashMap<>();
+        this.metrics = configs.metrics.specs();
+        this.specs = this;
+    }
+
+    /**
+     * Cache of render specs (TableRenderConfig)
+     */
+    public TableResultCache specs() { return specs; }
+
+    /**
+     * Cached value for the config and version, loading it on a miss
+     */
+    public <T> T get(String configName, CacheConfig config, String level, Object version, Callable<T> loader)
+            throws Exception {
+        return get(configName, configName, config, level, version, loader);
+    }
+
+    /**
+     * Cached value of the owner (a config or a data source) for the version;
+     * configName is the requesting config, the table the access is counted for
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String owner, String configName, CacheConfig config, String level, Object version,
+                     Callable<T> loader) throws Exception {
+        CacheKey cacheKey = new CacheKey(owner, level.toLowerCase());
+        BuiltCache built = caches.get(cacheKey);
+        if (built == null || !built.fits(config)) {
+            built = caches.compute(cacheKey, (key, current) ->
+                current != null && current.fits(config) ? current : new BuiltCache(config));
+        }
+        BuiltCache cache = built;
+        boolean[] loaded = new boolean[1];
+        try {
+            T value = (T) cache.cache.get(version != null ? version : NO_VERSION, key -> {
+                loaded[0] = true;
+                try {
+                    T loadedValue = loader.call();
+                    cache.checkWeight(cacheKey, loadedValue);
+                    return loadedValue;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new LoaderException(e);
+                }
+            });
+            // callers that waited on another caller's load count as hits
+            metrics.cacheAccess(configName, cacheKey.level, !loaded[0]);
+            return value;
+        } catch (LoaderException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Drop every cached level of a table config or data source
+     */
+    public void invalidate(String owner) {
+        caches.entrySet().removeIf(entry -> {
+            if (entry.getKey().owner.equals(owner)) {
+                entry.getValue().cache.invalidateAll();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public void invalidateAll() {
+        caches.values().forEach(built -> built.cache.invalidateAll());
+        caches.clear();
+        if (specs != this) {
+            specs.invalidateAll();
+        }
+    }
+
+    /**
+     * Owner and level of a cache, compared as a pair so that no owner name
+     * can match another owner's caches
+     */
+    private static final class CacheKey {
+        private final String owner;
+        private final String level;
+
+        CacheKey(String owner, String level) {
+            this.owner = owner;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) o;
+            return owner.equals(other.owner) && level.equals(other.level);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(owner, level);
+        }
+
+        @Override
+        public String toString() {
+            return owner + ":" + level;
+        }
+    }
+
+    /**
+     * A Caffeine cache together with the settings it was built from
+     */
+    private static final class BuiltCache {
+        private final CacheConfig config;
+        private final Duration ttl;
+        private final long maxWeight;
+        private final Cache<Object, Object> cache;
+        private final AtomicBoolean oversizeLogged = new AtomicBoolean();
+
+        BuiltCache(CacheConfig config) {
+            this.config = config;
+            this.ttl = config.getTtl();
+            this.maxWeight = config.getMaxWeight();
+            this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxWeight)
+                .weigher((Object key, Object value) -> weigh(value))
+                .build();
+        }
+
+        /**
+         * Whether the cache can serve config: the same instance, or one with the same settings
+         */
+        boolean fits(CacheConfig config) {
+            return this.config == config
+                || (Objects.equals(ttl, config.getTtl()) && maxWeight == config.getMaxWeight());
+        }
+
+        void checkWeight(CacheKey cacheKey, Object value) {
+            int weight = weigh(value);
+            if (weight > maxWeight && oversizeLogged.compareAndSet(false, true)) {
+                log.warn("Entry of cache {} weighs {}, more than maxWeight {}; "
+                    + "it is evicted at once and never served", cacheKey, weight, maxWeight);
+            }
+        }
+    }
+
+    private static int weigh(Object value) {
+        long weight;
+        if (value instanceof TableData) {
+            weight = ((TableData) value).getRows().size();
+        } else if (value instanceof Collection) {
+            weight = ((Collection<?>) value).size();
+        } else if (value instanceof CharSequence) {
+            weight = ((CharSequence) value).length();
+        } else if (value instanceof byte[]) {
+            weight = ((byte[]) value).length;
+        } else {
+            weight = 1;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, weight));
+    }
+
+    private static class LoaderException extends RuntimeException {
+        LoaderException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import jdk.incubator.vector.*;
+
+import java.util.Arrays;
+
+/**
+ * Range kernels on the JDK Vector API. Loaded reflectively by
+ * RangeKernels.load() so the incubator module is only needed when present.
+ *
+ * Lane counts are powers of two no larger than 64, so each vector's mask
+ * lands inside a single word of the chunk bitmask.
+ */
+class VectorRangeKernels implements RangeKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    public void intRange(int[] values, int start, int length, int lo, int hi, long[] out) {
+        Arrays.fill(out, 0, BatchFilterEvaluator.words(length), 0L);
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, values, start + i);
+            long bits = v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LE, hi)).toLong();
+            out[i >>> 6] |= bits << (i & 63);
+        }
+        for (; i < length; i++) {
+            int v = values[start + i];
+            if (v >= lo && v <= hi) {
+                out[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    public void longRange(long[] values, int start, int length, long lo, long hi, long[] out) {
+        Arrays.fill(out, 0, BatchFilterEvaluator.words(length), 0L);
+        int i = 0;
+        for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length()) {
+            LongVector v = LongVector.fromArray(LONGS, values, start + i);
+            long bits = v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LE, hi)).toLong();
+            out[i >>> 6] |= bits << (i & 63);
+        }
+        for (; i < length; i++) {
+            long v = values[start + i];
+            if (v >= lo && v <= hi) {
+                out[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    public void doubleRange(double[] values, int start, int length, double lo, double hi, long[] out) {
+        Arrays.fill(out, 0, BatchFilterEvaluator.words(length), 0L);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, values, start + i);
+            long bits = v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LE, hi)).toLong();
+            out[i >>> 6] |= bits << (i & 63);
+        }
+        for (; i < length; i++) {
+            double v = values[start + i];
+            if (v >= lo && v <= hi) {
+                out[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+}
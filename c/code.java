@@ -1,11 +1,21 @@
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
 
 /**
  * Column definition for table rendering
@@ -13,14 +23,27 @@ import java.util.stream.Collectors;
 class ColumnDefinition {
     private String fieldName;
     private String label;
+    private CellFormatter formatter;
     
     public ColumnDefinition(String fieldName, String label) {
+        this(fieldName, label, null);
+    }
+    
+    public ColumnDefinition(String fieldName, String label, CellFormatter formatter) {
         this.fieldName = fieldName;
         this.label = label;
+        this.formatter = formatter;
     }
     
     public String getFieldName() { return fieldName; }
     public String getLabel() { return label; }
+    
+    /**
+     * Compiled formatter of the column, null when it declares none. Rows keep
+     * the raw values; renderers (and templates, via formatter.format(value))
+     * turn them into escaped display text.
+     */
+    public CellFormatter getFormatter() { return formatter; }
 }
 
 /**
@@ -29,6 +52,7 @@ class ColumnDefinition {
 class TableData {
     private List<ColumnDefinition> columns;
     private List<Map<String, Object>> rows;
+    private AggregationResult aggregates;
     
     public TableData(List<ColumnDefinition> columns, List<Map<String, Object>> rows) {
         this.columns = columns;
@@ -37,6 +61,43 @@ class TableData {
     
     public List<ColumnDefinition> getColumns() { return columns; }
     public List<Map<String, Object>> getRows() { return rows; }
+    
+    /**
+     * Footer row of the configured aggregations, keyed by metric name
+     */
+    public Map<String, Object> getTotals() {
+        return aggregates != null ? aggregates.getTotals() : Collections.emptyMap();
+    }
+    
+    /**
+     * One row per groupBy value combination: group fields and metric values
+     */
+    public List<Map<String, Object>> getSubtotals() {
+        return aggregates != null ? aggregates.getSubtotals() : Collections.emptyList();
+    }
+    
+    public AggregationResult getAggregates() { return aggregates; }
+    void setAggregates(AggregationResult aggregates) { this.aggregates = aggregates; }
+}
+
+/**
+ * Table data backed by a live row stream; rows can be listed once and the
+ * underlying cursor must be released with close()
+ */
+class StreamingTableData implements AutoCloseable {
+    private final List<ColumnDefinition> columns;
+    private final Stream<Map<String, Object>> rows;
+    
+    public StreamingTableData(List<ColumnDefinition> columns, Stream<Map<String, Object>> rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+    
+    public List<ColumnDefinition> getColumns() { return columns; }
+    public Iterator<Map<String, Object>> getRows() { return rows.iterator(); }
+    
+    @Override
+    public void close() { rows.close(); }
 }
 
 /**
@@ -44,6 +105,40 @@ class TableData {
  */
 interface DataSourceService {
     List<Map<String, Object>> fetchData();
+    
+    /**
+     * Rows as they arrive from the source. Implementations backed by a cursor
+     * should override this; the caller closes the stream.
+     */
+    default Stream<Map<String, Object>> streamData() {
+        return fetchData().stream();
+    }
+}
+
+/**
+ * Data source reading a query through a JDBC cursor with fetch-size paging.
+ * Note that some drivers (e.g. PostgreSQL) only honour the fetch size
+ * inside a transaction with auto-commit disabled.
+ */
+class JdbcCursorDataSource implements DataSourceService {
+    private final JdbcTemplate jdbcTemplate;
+    private final String sql;
+    
+    public JdbcCursorDataSource(DataSource dataSource, String sql, int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.sql = sql;
+    }
+    
+    @Override
+    public List<Map<String, Object>> fetchData() {
+        return jdbcTemplate.queryForList(sql);
+    }
+    
+    @Override
+    public Stream<Map<String, Object>> streamData() {
+        return jdbcTemplate.queryForStream(sql, new ColumnMapRowMapper());
+    }
 }
 
 /**
@@ -52,15 +147,129 @@ interface DataSourceService {
 @ConfigurationProperties(prefix = "table-configs")
 class TableConfigProperties {
     private Map<String, TableConfig> tables = new HashMap<>();
+    private boolean codegen = false;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int sortSpillRows = 100_000;
+    private boolean asyncVirtualThreads = true;
+    private Duration asyncTimeout = Duration.ofSeconds(30);
+    private int asyncThreads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private int asyncQueueCapacity = 1000;
+    private int reactiveChunkRows = 256;
+    private boolean metricsAllocation = true;
+    private boolean metricsTracing = false;
+    private boolean metricsHistograms = false;
+    private boolean adaptiveFilters = false;
+    private int filterSampleRate = 32;
+    private int filterReorderSamples = 512;
+    private int offHeapThresholdRows = 0;
     
     public Map<String, TableConfig> getTables() { return tables; }
     public void setTables(Map<String, TableConfig> tables) { this.tables = tables; }
+    
+    /**
+     * Generate a dedicated filter/projection class per table config
+     */
+    public boolean isCodegen() { return codegen; }
+    public void setCodegen(boolean codegen) { this.codegen = codegen; }
+    
+    /**
+     * Worker threads of the dedicated pool used by parallel tables
+     */
+    public int getParallelism() { return parallelism; }
+    public void setParallelism(int parallelism) { this.parallelism = parallelism; }
+    
+    /**
+     * Rows held in memory per run before an unpaged sort spills to disk
+     */
+    public int getSortSpillRows() { return sortSpillRows; }
+    public void setSortSpillRows(int sortSpillRows) { this.sortSpillRows = sortSpillRows; }
+    
+    /**
+     * Run async table requests on virtual threads when the runtime supports them
+     */
+    public boolean isAsyncVirtualThreads() { return asyncVirtualThreads; }
+    public void setAsyncVirtualThreads(boolean asyncVirtualThreads) { this.asyncVirtualThreads = asyncVirtualThreads; }
+    
+    /**
+     * Default timeout of async table requests
+     */
+    public Duration getAsyncTimeout() { return asyncTimeout; }
+    public void setAsyncTimeout(Duration asyncTimeout) { this.asyncTimeout = asyncTimeout; }
+    
+    /**
+     * Platform threads of the async pool when virtual threads are off or unavailable
+     */
+    public int getAsyncThreads() { return asyncThreads; }
+    public void setAsyncThreads(int asyncThreads) { this.asyncThreads = asyncThreads; }
+    
+    /**
+     * Async tasks queued for the platform pool before new ones are rejected
+     */
+    public int getAsyncQueueCapacity() { return asyncQueueCapacity; }
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) { this.asyncQueueCapacity = asyncQueueCapacity; }
+    
+    /**
+     * Rows rendered into each buffer of a reactive HTML response
+     */
+    public int getReactiveChunkRows() { return reactiveChunkRows; }
+    public void setReactiveChunkRows(int reactiveChunkRows) { this.reactiveChunkRows = reactiveChunkRows; }
+    
+    /**
+     * Record bytes allocated per table stage (HotSpot thread allocation counters)
+     */
+    public boolean isMetricsAllocation() { return metricsAllocation; }
+    public void setMetricsAllocation(boolean metricsAllocation) { this.metricsAllocation = metricsAllocation; }
+    
+    /**
+     * Open an Observation (trace span) per table stage when an ObservationRegistry exists
+     */
+    public boolean isMetricsTracing() { return metricsTracing; }
+    public void setMetricsTracing(boolean metricsTracing) { this.metricsTracing = metricsTracing; }
+    
+    /**
+     * Publish a percentile histogram per table stage timer; off by default,
+     * timers then keep count, total and max only
+     */
+    public boolean isMetricsHistograms() { return metricsHistograms; }
+    public void setMetricsHistograms(boolean metricsHistograms) { this.metricsHistograms = metricsHistograms; }
+    
+    /**
+     * Re-order and/or conditions of compiled filters from sampled cost and selectivity.
+     * Off by default: sampling costs every row of an and/or a random draw.
+     */
+    public boolean isAdaptiveFilters() { return adaptiveFilters; }
+    public void setAdaptiveFilters(boolean adaptiveFilters) { this.adaptiveFilters = adaptiveFilters; }
+    
+    /**
+     * One row in filterSampleRate is evaluated against every condition and timed
+     */
+    public int getFilterSampleRate() { return filterSampleRate; }
+    public void setFilterSampleRate(int filterSampleRate) { this.filterSampleRate = filterSampleRate; }
+    
+    /**
+     * Sampled rows per and/or node between two re-orderings
+     */
+    public int getFilterReorderSamples() { return filterReorderSamples; }
+    public void setFilterReorderSamples(int filterReorderSamples) { this.filterReorderSamples = filterReorderSamples; }
+    
+    /**
+     * Cached sources and results with more rows than this are kept off heap; 0 disables
+     */
+    public int getOffHeapThresholdRows() { return offHeapThresholdRows; }
+    public void setOffHeapThresholdRows(int offHeapThresholdRows) { this.offHeapThresholdRows = offHeapThresholdRows; }
 }
 
 class TableConfig {
     private DataSourceConfig dataSource;
     private List<ColumnConfig> columns;
     private FilterConfig filter;
+    private boolean columnar = false;
+    private CacheConfig cache;
+    private ParallelConfig parallel;
+    private TableQuery query;
+    private List<IndexConfig> indexes;
+    private AggregationConfig aggregations;
+    private String primaryKey;
     
     public DataSourceConfig getDataSource() { return dataSource; }
     public void setDataSource(DataSourceConfig dataSource) { this.dataSource = dataSource; }
@@ -70,28 +279,113 @@ class TableConfig {
     
     public FilterConfig getFilter() { return filter; }
     public void setFilter(FilterConfig filter) { this.filter = filter; }
+    
+    /**
+     * Store rows column by column instead of one map per row
+     */
+    public boolean isColumnar() { return columnar; }
+    public void setColumnar(boolean columnar) { this.columnar = columnar; }
+    
+    public CacheConfig getCache() { return cache; }
+    public void setCache(CacheConfig cache) { this.cache = cache; }
+    
+    public ParallelConfig getParallel() { return parallel; }
+    public void setParallel(ParallelConfig parallel) { this.parallel = parallel; }
+    
+    /**
+     * Default paging and ordering, overridden per request
+     */
+    public TableQuery getQuery() { return query; }
+    public void setQuery(TableQuery query) { this.query = query; }
+    
+    /**
+     * Secondary indexes built over the cached source; used only with cache level "source"
+     */
+    public List<IndexConfig> getIndexes() { return indexes; }
+    public void setIndexes(List<IndexConfig> indexes) { this.indexes = indexes; }
+    
+    /**
+     * Totals and group-by subtotals computed in the filtering pass
+     */
+    public AggregationConfig getAggregations() { return aggregations; }
+    public void setAggregations(AggregationConfig aggregations) { this.aggregations = aggregations; }
+    
+    /**
+     * Row key for incremental refresh; requires a data source bean that
+     * implements DeltaDataSourceService
+     */
+    public String getPrimaryKey() { return primaryKey; }
+    public void setPrimaryKey(String primaryKey) { this.primaryKey = primaryKey; }
 }
 
 class DataSourceConfig {
     private String beanName;
     private String methodName;
+    private String versionMethodName;
     
     public String getBeanName() { return beanName; }
     public void setBeanName(String beanName) { this.beanName = beanName; }
     
     public String getMethodName() { return methodName; }
     public void setMethodName(String methodName) { this.methodName = methodName; }
+    
+    /**
+     * Optional no-arg method on the same bean returning the current data version;
+     * cached results are keyed by it
+     */
+    public String getVersionMethodName() { return versionMethodName; }
+    public void setVersionMethodName(String versionMethodName) { this.versionMethodName = versionMethodName; }
 }
 
 class ColumnConfig {
     private String fieldName;
     private String label;
+    private String type;
+    private String numberFormat;
+    private String dateFormat;
+    private Map<String, String> labels;
+    private String escape;
     
     public String getFieldName() { return fieldName; }
     public void setFieldName(String fieldName) { this.fieldName = fieldName; }
     
     public String getLabel() { return label; }
     public void setLabel(String label) { this.label = label; }
+    
+    /**
+     * Value type for columnar storage: int, long, double, boolean, string or object.
+     * Inferred from the first non-null value when not set.
+     */
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+    
+    /**
+     * DecimalFormat pattern for numeric values
+     */
+    public String getNumberFormat() { return numberFormat; }
+    public void setNumberFormat(String numberFormat) { this.numberFormat = numberFormat; }
+    
+    /**
+     * DateTimeFormatter pattern for date/time values
+     */
+    public String getDateFormat() { return dateFormat; }
+    public void setDateFormat(String dateFormat) { this.dateFormat = dateFormat; }
+    
+    /**
+     * Display label per value (enum name or toString)
+     */
+    public Map<String, String> getLabels() { return labels; }
+    public void setLabels(Map<String, String> labels) { this.labels = labels; }
+    
+    /**
+     * html (default) or none
+     */
+    public String getEscape() { return escape; }
+    public void setEscape(String escape) { this.escape = escape; }
+    
+    public CellFormatter compileFormatter(Locale locale) {
+        return CellFormatter.compile(numberFormat, dateFormat, labels, escape, locale);
+    }
 }
 
 class FilterConfig {
@@ -362,7 +656,7 @@ class FilterBuilder {
         return innerPredicate.negate();
     }
     
-    private Predicate<Map<String, Object>> buildCustomPredicate(FilterConfig config) {
+    Predicate<Map<String, Object>> buildCustomPredicate(FilterConfig config) {
         try {
             Object bean = context.getBean(config.getCustomBean());
             java.lang.reflect.Method method = bean.getClass()
@@ -388,16 +682,32 @@ class FilterBuilder {
  */
 @Component
 public class GenericTableDataComponent {
-    private final ApplicationContext context;
-    private final FilterBuilder filterBuilder;
+    private final TablePlanRegistry planRegistry;
+    private final BatchFilterEvaluator batchFilterEvaluator;
+    private final TableResultCache resultCache;
+    private final TablePipelineExecutor pipelineExecutor;
+    private final RowSorter rowSorter;
+    private final AsyncTableExecutor asyncExecutor;
+    private final TableMetrics metrics;
     private final TableConfigProperties configProperties;
+    private final Map<String, MaterializedTable> materialized = new ConcurrentHashMap<>();
     
     public GenericTableDataComponent(
-            ApplicationContext context,
-            FilterBuilder filterBuilder,
+            TablePlanRegistry planRegistry,
+            BatchFilterEvaluator batchFilterEvaluator,
+            TableResultCache resultCache,
+            TablePipelineExecutor pipelineExecutor,
+            RowSorter rowSorter,
+            AsyncTableExecutor asyncExecutor,
+            TableMetrics metrics,
             TableConfigProperties configProperties) {
-        this.context = context;
-        this.filterBuilder = filterBuilder;
+        this.planRegistry = planRegistry;
+        this.batchFilterEvaluator = batchFilterEvaluator;
+        this.resultCache = resultCache;
+        this.pipelineExecutor = pipelineExecutor;
+        this.rowSorter = rowSorter;
+        this.asyncExecutor = asyncExecutor;
+        this.metrics = metrics;
         this.configProperties = configProperties;
     }
     
@@ -408,20 +718,224 @@ public class GenericTableDataComponent {
      * @return TableData ready for FreeMarker rendering
      */
     public TableData processTableByConfig(String configName) {
+        TablePlan plan = planRegistry.plan(configName);
+        
+        try (TableMetrics.Stage ignored = metrics.stage(configName, TableMetrics.PROCESS)) {
+            if (plan.getDeltaSource() != null) {
+                return materialized(plan).read();
+            }
+            
+            CacheConfig cache = plan.getConfig().getCache();
+            if (cache != null && cache.caches(TableResultCache.FILTERED)) {
+                return cached(plan, TableResultCache.FILTERED, () -> buildTable(plan));
+            }
+            return buildTable(plan);
+        }
+    }
+    
+    /**
+     * Process a table off the calling thread, with the default timeout.
+     * Cancelling the future interrupts the data source call.
+     */
+    public CompletableFuture<TableData> processTableByConfigAsync(String configName) {
+        return asyncExecutor.submit(() -> processTableByConfig(configName));
+    }
+    
+    public CompletableFuture<TableData> processTableByConfigAsync(String configName, Duration timeout) {
+        return asyncExecutor.submit(() -> processTableByConfig(configName), timeout);
+    }
+    
+    /**
+     * Process several tables concurrently; completes when the slowest one does
+     */
+    public CompletableFuture<Map<String, TableData>> processTablesByConfigAsync(Set<String> configNames,
+                                                                              Duration timeout) {
+        return asyncExecutor.submitAll(configNames, name -> () -> processTableByConfig(name), timeout);
+    }
+    
+    /**
+     * Blocking batch variant: fetches run concurrently, so the call costs about
+     * the slowest table instead of the sum of all of them
+     */
+    public Map<String, TableData> processTablesByConfig(Set<String> configNames) {
+        return AsyncTableExecutor.await(
+            processTablesByConfigAsync(configNames, asyncExecutor.getDefaultTimeout()));
+    }
+    
+    /**
+     * Process one page of a table. Rows are filtered, ordered and cut to the
+     * page before projection, so only the page is projected. Tables with a
+     * cached filtered result, a columnar plan or incremental refresh are paged
+     * from their projected rows, so sortBy must name a configured column there.
+     * 
+     * @param configName The name of the table configuration in YAML
+     * @param query Paging and ordering; unset values fall back to the config's query
+     * @return PagedTableData with the page rows and the total matching row count
+     */
+    public PagedTableData processTableByConfig(String configName, TableQuery query) {
+        TablePlan plan = planRegistry.plan(configName);
+        TableQuery effective = (query != null ? query : new TableQuery())
+            .withDefaults(plan.getConfig().getQuery());
+        
+        if (pagesFromResult(plan)) {
+            TableData table = processTableByConfig(configName);
+            RowWindow window = rowSorter.select(table.getRows().iterator(), effective);
+            PagedTableData page = new PagedTableData(plan.getColumns(), window.getRows(), window.getTotalCount(), effective);
+            page.setAggregates(table.getAggregates());
+            return page;
+        }
+        
+        GeneratedRowPlan rowPlan = plan.getRowPlan();
+        Aggregator aggregator = plan.newAggregator();
+        List<Map<String, Object>> processedRows;
+        long totalCount;
+        try (Stream<Map<String, Object>> dataSource = filtered(plan, sourceOf(plan))) {
+            // aggregates cover every matching row, not only the page
+            Iterator<Map<String, Object>> filtered = aggregator != null
+                ? dataSource.peek(aggregator::accept).iterator()
+                : dataSource.iterator();
+            if (effective.isSorted() && !effective.isPaged()) {
+                // full sort: project rows as they come out of the merge, into the
+                // off-heap store once they pass offHeapThresholdRows
+                try (RowSorter.CloseableRowIterator sorted = rowSorter.sort(filtered, effective.comparator())) {
+                    processedRows = collectRows(StreamSupport
+                        .stream(Spliterators.spliteratorUnknownSize(sorted, Spliterator.ORDERED), false)
+                        .map(rowPlan.getProjector()));
+                }
+                totalCount = processedRows.size();
+            } else {
+                RowWindow window = rowSorter.select(filtered, effective);
+                processedRows = window.getRows().stream()
+                    .map(rowPlan.getProjector())
+                    .collect(Collectors.toList());
+                totalCount = window.getTotalCount();
+            }
+        }
+        PagedTableData page = new PagedTableData(plan.getColumns(), processedRows, totalCount, effective);
+        if (aggregator != null) {
+            page.setAggregates(aggregator.result());
+        }
+        return page;
+    }
+    
+    /**
+     * Number of rows matching the filter, without projecting them
+     */
+    public long countTableByConfig(String configName) {
+        TablePlan plan = planRegistry.plan(configName);
+        
+        if (pagesFromResult(plan)) {
+            return processTableByConfig(configName).getRows().size();
+        }
+        try (Stream<Map<String, Object>> dataSource = filtered(plan, sourceOf(plan))) {
+            return dataSource.count();
+        }
+    }
+    
+    /**
+     * Apply the data source's changes to the materialized result of a
+     * primaryKey table and return only what changed; use
+     * TableChanges.toRowFragments() to push the changed rows to a page
+     */
+    public TableChanges refreshChangesByConfig(String configName) {
+        TablePlan plan = planRegistry.plan(configName);
+        if (plan.getDeltaSource() == null) {
+            throw new IllegalArgumentException("Table config has no incremental data source: " + configName);
+        }
+        return materialized(plan).refreshChanges();
+    }
+    
+    /**
+     * Drop cached source rows and results of a table configuration
+     */
+    public void invalidate(String configName) {
+        resultCache.invalidate(configName);
         TableConfig config = configProperties.getTables().get(configName);
-        if (config == null) {
-            throw new IllegalArgumentException("Table config not found: " + configName);
+        if (config != null) {
+            // the source level is shared with every config reading the same data source
+            resultCache.invalidate(TablePlan.sourceName(configName, config));
+        }
+        materialized.remove(configName);
+    }
+    
+    private MaterializedTable materialized(TablePlan plan) {
+        return materialized.compute(plan.getConfigName(), (name, table) ->
+            table != null && table.getPlan() == plan ? table : new MaterializedTable(plan));
+    }
+    
+    /**
+     * Whether pages are cut from the complete projected result instead of the source
+     */
+    private boolean pagesFromResult(TablePlan plan) {
+        CacheConfig cache = plan.getConfig().getCache();
+        return plan.getDeltaSource() != null
+            || plan.getColumnarPlan() != null
+            || (cache != null && cache.caches(TableResultCache.FILTERED));
+    }
+    
+    private TableData buildTable(TablePlan plan) {
+        DataSourceService dataSource = sourceOf(plan);
+        
+        if (plan.getColumnarPlan() != null) {
+            return processColumnar(dataSource, plan);
         }
         
-        DataSourceService dataSource = buildDataSourceService(config.getDataSource());
+        GeneratedRowPlan rowPlan = plan.getRowPlan();
         
-        List<ColumnDefinition> columns = config.getColumns().stream()
-            .map(c -> new ColumnDefinition(c.getFieldName(), c.getLabel()))
-            .collect(Collectors.toList());
+        Aggregator aggregator = plan.newAggregator();
+        
+        Stream<Map<String, Object>> indexed = indexed(plan, dataSource);
+        if (indexed != null) {
+            try (TableMetrics.Stage ignored = metrics.stage(plan.getConfigName(), TableMetrics.FILTER)) {
+                return counted(plan.getConfigName(), dataSource.fetchData().size(),
+                    processRows(indexed, rowPlan.getProjector(), plan.getColumns(), aggregator));
+            }
+        }
         
-        Predicate<Map<String, Object>> predicate = filterBuilder.buildPredicate(config.getFilter());
+        ParallelConfig parallel = plan.getConfig().getParallel();
+        if (parallel != null && parallel.isEnabled()) {
+            List<Map<String, Object>> rows;
+            try (TableMetrics.Stage ignored = metrics.stage(plan.getConfigName(), TableMetrics.FETCH)) {
+                rows = dataSource.fetchData();
+            }
+            if (parallel.appliesTo(rows.size())) {
+                try (TableMetrics.Stage ignored = metrics.stage(plan.getConfigName(), TableMetrics.FILTER)) {
+                    List<Map<String, Object>> processedRows = pipelineExecutor.filterAndProject(
+                        rows, plan.getParallelFilter(), rowPlan.getProjector(), parallel.getChunkSize(), aggregator);
+                    return counted(plan.getConfigName(), rows.size(),
+                        withAggregates(new TableData(plan.getColumns(), processedRows), aggregator));
+                }
+            }
+            dataSource = () -> rows;
+        }
         
-        return processData(dataSource, predicate, columns);
+        return processData(plan.getConfigName(), dataSource, rowPlan.getFilter(), rowPlan.getProjector(),
+            plan.getColumns(), aggregator);
+    }
+    
+    /**
+     * Stream table by configuration name; filter and column extraction run
+     * as rows arrive from the data source
+     * 
+     * @param configName The name of the table configuration in YAML
+     * @return StreamingTableData that must be closed after rendering
+     */
+    public StreamingTableData streamTableByConfig(String configName) {
+        TablePlan plan = planRegistry.plan(configName);
+        GeneratedRowPlan rowPlan = plan.getRowPlan();
+        
+        Stream<Map<String, Object>> rows = plan.getDataSource().streamData()
+            .filter(rowPlan.getFilter())
+            .map(rowPlan.getProjector());
+        return new StreamingTableData(plan.getColumns(), rows);
+    }
+    
+    /**
+     * Evaluation order and sampled statistics of the table filter's and/or
+     * nodes; empty when the filter is generated by codegen or not adaptive
+     */
+    public List<JunctionStatistics> filterStatisticsByConfig(String configName) {
+        return FilterCompiler.statistics(planRegistry.plan(configName).getRowPlan().getFilter());
     }
     
     /**
@@ -438,56 +952,164 @@ public class GenericTableDataComponent {
         return configProperties.getTables().containsKey(configName);
     }
     
-    private DataSourceService buildDataSourceService(DataSourceConfig config) {
-        return () -> {
-            try {
-                Object bean = context.getBean(config.getBeanName());
-                java.lang.reflect.Method method = bean.getClass()
-                    .getMethod(config.getMethodName());
-                
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> result = 
-                    (List<Map<String, Object>>) method.invoke(bean);
-                return result != null ? result : Collections.emptyList();
-            } catch (NoSuchMethodException e) {
-                throw new RuntimeException("Method not found: " + config.getMethodName() + 
-                    " on bean: " + config.getBeanName(), e);
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to fetch data from " + 
-                    config.getBeanName() + "." + config.getMethodName(), e);
-            }
-        };
+    /**
+     * The plan's data source, served from the SOURCE cache level when configured.
+     * The level is owned by the data source bean method, so every config reading
+     * it shares the fetched rows and each set of index declarations.
+     */
+    private DataSourceService sourceOf(TablePlan plan) {
+        DataSourceService dataSource = plan.getDataSource();
+        
+        CacheConfig cache = plan.getConfig().getCache();
+        if (cache != null && cache.caches(TableResultCache.SOURCE)) {
+            CachedSource source = cachedSource(plan, () -> {
+                try (TableMetrics.Stage ignored = metrics.stage(plan.getConfigName(), TableMetrics.FETCH)) {
+                    return new CachedSource(fetchSource(dataSource));
+                }
+            });
+            List<Map<String, Object>> rows = plan.getIndexPlan() != null
+                ? source.indexed(plan.getConfig().getIndexes())
+                : source;
+            return () -> rows;
+        }
+        return dataSource;
+    }
+    
+    /**
+     * All source rows, streamed into an off-heap store once there are more
+     * than offHeapThresholdRows
+     */
+    private List<Map<String, Object>> fetchSource(DataSourceService dataSource) {
+        int threshold = configProperties.getOffHeapThresholdRows();
+        if (threshold <= 0) {
+            return dataSource.fetchData();
+        }
+        try (Stream<Map<String, Object>> rows = dataSource.streamData()) {
+            return OffHeapRows.collect(rows, threshold);
+        }
+    }
+    
+    /**
+     * Filtered source rows, served from an index when one applies
+     */
+    private Stream<Map<String, Object>> filtered(TablePlan plan, DataSourceService dataSource) {
+        Stream<Map<String, Object>> indexed = indexed(plan, dataSource);
+        return indexed != null ? indexed : dataSource.streamData().filter(plan.getRowPlan().getFilter());
+    }
+    
+    private Stream<Map<String, Object>> indexed(TablePlan plan, DataSourceService dataSource) {
+        if (plan.getIndexPlan() == null) {
+            return null;
+        }
+        List<Map<String, Object>> rows = dataSource.fetchData();
+        return rows instanceof IndexedRows ? plan.getIndexPlan().filter((IndexedRows) rows) : null;
+    }
+    
+    private <T> T cached(TablePlan plan, String level, Callable<T> loader) {
+        try {
+            return resultCache.get(plan.getConfigName(), plan.getConfig().getCache(), level,
+                plan.dataVersion(), loader);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load table " + plan.getConfigName(), e);
+        }
+    }
+    
+    private CachedSource cachedSource(TablePlan plan, Callable<CachedSource> loader) {
+        try {
+            return resultCache.get(plan.getSourceName(), plan.getConfigName(), plan.getConfig().getCache(),
+                TableResultCache.SOURCE, plan.dataVersion(), loader);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load source of table " + plan.getConfigName(), e);
+        }
     }
     
     private TableData processData(
+            String configName,
             DataSourceService dataSourceService,
             Predicate<Map<String, Object>> criteria,
-            List<ColumnDefinition> columnDefinitions) {
-        
-        List<Map<String, Object>> dataSource = dataSourceService.fetchData();
+            Function<Map<String, Object>, Map<String, Object>> projector,
+            List<ColumnDefinition> columnDefinitions,
+            Aggregator aggregator) {
         
-        List<Map<String, Object>> filteredData = dataSource.stream()
-                .filter(criteria)
-                .collect(Collectors.toList());
+        TableMetrics.RowCounter rowsIn = new TableMetrics.RowCounter();
+        try (Stream<Map<String, Object>> dataSource = dataSourceService.streamData();
+             TableMetrics.Stage ignored = metrics.stage(configName, TableMetrics.FILTER)) {
+            TableData table = processRows(dataSource.peek(rowsIn).filter(criteria), projector,
+                columnDefinitions, aggregator);
+            return counted(configName, rowsIn.getCount(), table);
+        }
+    }
+    
+    private TableData counted(String configName, long rowsIn, TableData table) {
+        metrics.rowsIn(configName, rowsIn);
+        metrics.rowsOut(configName, table.getRows().size());
+        return table;
+    }
+    
+    /**
+     * Projects filtered rows, aggregating them in the same pass
+     */
+    private TableData processRows(
+            Stream<Map<String, Object>> filteredRows,
+            Function<Map<String, Object>, Map<String, Object>> projector,
+            List<ColumnDefinition> columnDefinitions,
+            Aggregator aggregator) {
         
-        List<Map<String, Object>> processedRows = filteredData.stream()
-                .map(record -> extractColumns(record, columnDefinitions))
-                .collect(Collectors.toList());
+        if (aggregator != null) {
+            filteredRows = filteredRows.peek(aggregator::accept);
+        }
+        List<Map<String, Object>> processedRows = collectRows(filteredRows.map(projector));
         
-        return new TableData(columnDefinitions, processedRows);
+        return withAggregates(new TableData(columnDefinitions, processedRows), aggregator);
     }
     
-    private Map<String, Object> extractColumns(
-            Map<String, Object> record, 
-            List<ColumnDefinition> columnDefinitions) {
-        
-        Map<String, Object> extractedData = new LinkedHashMap<>();
+    /**
+     * Collects result rows, off heap once there are more than offHeapThresholdRows
+     */
+    private List<Map<String, Object>> collectRows(Stream<Map<String, Object>> rows) {
+        int offHeapThreshold = configProperties.getOffHeapThresholdRows();
+        return offHeapThreshold > 0
+                ? OffHeapRows.collect(rows, offHeapThreshold)
+                : rows.collect(Collectors.toList());
+    }
+    
+    private static TableData withAggregates(TableData table, Aggregator aggregator) {
+        if (aggregator != null) {
+            table.setAggregates(aggregator.result());
+        }
+        return table;
+    }
+    
+    /**
+     * Loads the source into column vectors and filters them chunk by chunk; rows are
+     * exposed as map views, so no projected map is stored per row
+     */
+    private TableData processColumnar(DataSourceService dataSourceService, TablePlan plan) {
+        ColumnarFilterPlan filterPlan = plan.getColumnarPlan();
+        ColumnarTableData.Builder builder = filterPlan.prepare(
+            new ColumnarTableData.Builder(plan.getColumns(), plan.getConfig().getColumns()));
+        Aggregator aggregator = plan.newAggregator();
+        if (aggregator != null) {
+            aggregator.getFields().forEach(field -> builder.addField(field, null));
+        }
         
-        for (ColumnDefinition colDef : columnDefinitions) {
-            Object value = record.get(colDef.getFieldName());
-            extractedData.put(colDef.getFieldName(), value != null ? value : "");
+        try (Stream<Map<String, Object>> dataSource = dataSourceService.streamData();
+             TableMetrics.Stage ignored = metrics.stage(plan.getConfigName(), TableMetrics.FETCH)) {
+            dataSource.forEach(builder::add);
         }
         
-        return extractedData;
+        ColumnarTableData data = builder.build();
+        try (TableMetrics.Stage ignored = metrics.stage(plan.getConfigName(), TableMetrics.FILTER)) {
+            BitSet selection = batchFilterEvaluator.evaluate(filterPlan, data);
+            if (aggregator != null) {
+                selection.stream().forEach(row -> aggregator.accept(data, row));
+            }
+            return counted(plan.getConfigName(), data.getRowCount(),
+                withAggregates(data.withSelection(selection), aggregator));
+        }
     }
 }
\ No newline at end of file
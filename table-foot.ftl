@@ -0,0 +1,2 @@
+  </tbody>
+</table>
\ No newline at end of file
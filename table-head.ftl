@@ -0,0 +1,9 @@
+<table border="1" class="data-table">
+  <thead>
+    <tr>
+      <#list columns as col>
+        <th>${col.label}</th>
+      </#list>
+    </tr>
+  </thead>
+  <tbody>
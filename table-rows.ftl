@@ -0,0 +1,7 @@
+    <#list filteredData as row>
+      <tr>
+        <#list columns as col>
+          <td>${row[col.field]?string}</td>
+        </#list>
+      </tr>
+    </#list>
\ No newline at end of file